@@ -0,0 +1,83 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.atlassian.jira.rest.client.api.domain.input.FieldInput;
+import hudson.EnvVars;
+import hudson.tasks.test.TestResult;
+import org.jenkinsci.plugins.JiraTestResultReporter.config.AbstractFields;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The state of the variable expansion for one test. It remembers the value of every variable and every rendered
+ * field, so that creating the issue, looking for duplicates and expanding the default templates all share the same
+ * values, and each variable is computed at most once per test. Not thread safe, it is meant to be used by the thread
+ * raising the issue for the test.
+ */
+public class ExpansionContext {
+    private final TestResult test;
+    private final EnvVars envVars;
+    private final Map<String, String> variables = new HashMap<>();
+    private final Map<AbstractFields, FieldInput> fieldInputs = new IdentityHashMap<>();
+
+    /**
+     * Constructor
+     * @param test the test
+     * @param envVars environment variables of the build
+     */
+    public ExpansionContext(TestResult test, EnvVars envVars) {
+        this.test = test;
+        this.envVars = envVars;
+    }
+
+    public TestResult getTest() {
+        return test;
+    }
+
+    public EnvVars getEnvVars() {
+        return envVars;
+    }
+
+    /**
+     * Getter for the value of a variable, if it was already expanded in this context
+     * @param name variable name
+     * @return the value, or null if it was not expanded yet
+     */
+    String getVariable(String name) {
+        return variables.get(name);
+    }
+
+    void putVariable(String name, String value) {
+        variables.put(name, value);
+    }
+
+    /**
+     * Getter for the FieldInput of a configured field, rendered only the first time it is requested
+     * @param field the configured field
+     * @return the FieldInput for this test
+     */
+    public FieldInput getFieldInput(AbstractFields field) {
+        FieldInput fieldInput = fieldInputs.get(field);
+        if(fieldInput == null) {
+            fieldInput = field.getFieldInput(this);
+            fieldInputs.put(field, fieldInput);
+        }
+        return fieldInput;
+    }
+}
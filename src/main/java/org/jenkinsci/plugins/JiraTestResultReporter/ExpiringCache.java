@@ -0,0 +1,378 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache for values loaded from Jira. The entries expire after a time to live, and the ones that are used
+ * after the refresh time are reloaded in the background, so the users don't have to wait for Jira. Concurrent misses
+ * for the same key share a single load, and failed loads are remembered for a shorter time, so an unreachable server
+ * is not asked again on every request. A load that is still running when its key is invalidated or replaced doesn't
+ * write its value into the cache.
+ * @param <K> key type
+ * @param <V> value type
+ */
+public abstract class ExpiringCache<K, V> {
+    private static class Entry<V> {
+        private final V value;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Snapshot of the cache statistics
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long loads;
+        private final long failedLoads;
+        private final long totalLoadTimeNanos;
+        private final int size;
+
+        Stats(long hits, long misses, long loads, long failedLoads, long totalLoadTimeNanos, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.loads = loads;
+            this.failedLoads = failedLoads;
+            this.totalLoadTimeNanos = totalLoadTimeNanos;
+            this.size = size;
+        }
+
+        public long getHits() { return hits; }
+
+        public long getMisses() { return misses; }
+
+        public long getLoads() { return loads; }
+
+        public long getFailedLoads() { return failedLoads; }
+
+        /**
+         * Getter for the average time of a load, failed loads included
+         * @return average load time in milliseconds
+         */
+        public double getAverageLoadTimeMillis() {
+            return loads == 0 ? 0 : totalLoadTimeNanos / 1e6 / loads;
+        }
+
+        public int getSize() { return size; }
+
+        @Override
+        public String toString() {
+            return String.format("hits: %d, misses: %d, loads: %d, failed loads: %d, average load time: %.1f ms, size: %d",
+                    hits, misses, loads, failedLoads, getAverageLoadTimeMillis(), size);
+        }
+    }
+
+    private final String name;
+    private final long timeToLive;
+    private final long refreshAfter;
+    private final long negativeTimeToLive;
+    private final Map<K, Entry<V>> entries;
+    private final ConcurrentMap<K, Load> loading = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong failedLoads = new AtomicLong();
+    private final AtomicLong totalLoadTimeNanos = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param name name of the cache, used in the logs
+     * @param maxSize maximum number of entries, the least recently used ones are evicted first
+     * @param timeToLive time in milliseconds after which a value is not returned anymore
+     * @param refreshAfter time in milliseconds after which a value that is used gets reloaded in the background
+     * @param negativeTimeToLive time in milliseconds for which a failed load is remembered
+     */
+    public ExpiringCache(String name, final int maxSize, long timeToLive, long refreshAfter, long negativeTimeToLive) {
+        this.name = name;
+        this.timeToLive = timeToLive;
+        this.refreshAfter = refreshAfter;
+        this.negativeTimeToLive = negativeTimeToLive;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Loads the value for a key, called on a miss and for the background refreshes
+     * @param key the key
+     * @return the value, null if there is no value for this key
+     * @throws Exception if the value could not be loaded
+     */
+    protected abstract V load(K key) throws Exception;
+
+    /**
+     * Getter for the executor of the background refreshes
+     * @return the executor
+     */
+    protected Executor getRefreshExecutor() {
+        return JiraExecutor.get();
+    }
+
+    /**
+     * Getter for the current time, can be overridden for testing
+     * @return the current time in milliseconds
+     */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Getter for a value, it will be loaded if it is not in the cache or if it expired. If it is about to expire,
+     * the cached value is returned and a background refresh is started.
+     * @param key the key
+     * @return the value, or null if it could not be loaded
+     */
+    public V get(K key) {
+        Entry<V> entry = getCachedEntry(key);
+        if(entry != null) {
+            return entry.value;
+        }
+
+        misses.incrementAndGet();
+        entry = loadShared(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Getter for a value that is already in the cache, it is never loaded on the calling thread. Like in
+     * {@link #get(Object)}, if the value is about to expire a background refresh is started.
+     * @param key the key
+     * @return the value, or null if it is not in the cache, if it expired or if it could not be loaded
+     */
+    public V getCached(K key) {
+        Entry<V> entry = getCachedEntry(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Checks if there is an entry for a key that did not expire, failed loads included
+     * @param key the key
+     * @return true if the key is in the cache
+     */
+    public boolean isCached(K key) {
+        Entry<V> entry = getEntry(key);
+        return entry != null && !isExpired(entry, now());
+    }
+
+    /**
+     * Getter for a value, only if it is already in the cache and it did not expire
+     * @param key the key
+     * @return the value, or null
+     */
+    public V getIfPresent(K key) {
+        Entry<V> entry = getEntry(key);
+        return entry != null && !isExpired(entry, now()) ? entry.value : null;
+    }
+
+    /**
+     * Adds a value to the cache, for values obtained by other means than {@link #load(Object)}
+     * @param key the key
+     * @param value the value
+     */
+    public void put(K key, V value) {
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, now()));
+            loading.remove(key);
+        }
+    }
+
+    /**
+     * Adds a value that may be out of date, for example one saved before a restart. It is returned until it expires,
+     * and the first time it is used a refresh is started in the background.
+     * @param key the key
+     * @param value the value
+     */
+    public void putStale(K key, V value) {
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, now() - refreshAfter));
+        }
+    }
+
+    /**
+     * Removes a value from the cache
+     * @param key the key
+     */
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+            loading.remove(key);
+        }
+    }
+
+    /**
+     * Removes all the values from the cache
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            loading.clear();
+        }
+    }
+
+    /**
+     * Getter for the cache statistics
+     * @return the statistics
+     */
+    public Stats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.get(), misses.get(), loads.get(), failedLoads.get(), totalLoadTimeNanos.get(), size);
+    }
+
+    /**
+     * Getter for an entry that did not expire, starting a background refresh if it is about to
+     * @param key the key
+     * @return the entry, or null on a miss
+     */
+    private Entry<V> getCachedEntry(final K key) {
+        Entry<V> entry = getEntry(key);
+        long now = now();
+        if(entry == null || isExpired(entry, now)) {
+            return null;
+        }
+
+        hits.incrementAndGet();
+        if(entry.value != null && now - entry.loadedAt >= refreshAfter && entry.refreshing.compareAndSet(false, true)) {
+            try {
+                getRefreshExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        loadShared(key);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                //too much work queued, try again on the next hit
+                entry.refreshing.set(false);
+            }
+        }
+        return entry;
+    }
+
+    private Entry<V> getEntry(K key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return now - entry.loadedAt >= (entry.value != null ? timeToLive : negativeTimeToLive);
+    }
+
+    /**
+     * A load in progress, shared by all the threads that miss the same key. It is removed from {@link #loading} when
+     * it finishes, or earlier if the key is invalidated or replaced, in which case its value is not cached.
+     */
+    private final class Load implements Callable<Entry<V>> {
+        private final K key;
+        private final FutureTask<Entry<V>> future = new FutureTask<>(this);
+
+        Load(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public Entry<V> call() {
+            try {
+                return doLoad(this);
+            } finally {
+                loading.remove(key, this);
+            }
+        }
+    }
+
+    /**
+     * Loads the value, or waits for the load already started by another thread
+     * @param key the key
+     * @return the new entry
+     */
+    private Entry<V> loadShared(K key) {
+        Load load = new Load(key);
+        Load existing = loading.putIfAbsent(key, load);
+        if(existing == null) {
+            load.future.run();
+        } else {
+            load = existing;
+        }
+
+        try {
+            return load.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            //the load errors are caught in doLoad, only Errors get here
+            throw new IllegalStateException(name + " failed to load " + key, e.getCause());
+        }
+    }
+
+    private Entry<V> doLoad(Load load) {
+        K key = load.key;
+        long start = System.nanoTime();
+        V value = null;
+        Exception error = null;
+        try {
+            value = load(key);
+        } catch (Exception e) {
+            error = e;
+        } finally {
+            loads.incrementAndGet();
+            totalLoadTimeNanos.addAndGet(System.nanoTime() - start);
+        }
+
+        if(error != null) {
+            failedLoads.incrementAndGet();
+            JiraUtils.logError("ERROR: " + name + " failed to load " + key, error);
+        }
+
+        synchronized (entries) {
+            Entry<V> previous = entries.get(key);
+            if(loading.get(key) != load) {
+                //invalidated or replaced while loading, the value may be older than what the cache knows now
+                return previous != null ? previous : new Entry<>(value, now());
+            }
+            if(error != null && previous != null && previous.value != null && !isExpired(previous, now())) {
+                //failed refresh, keep serving the old value until it expires, without retrying on every request
+                return previous;
+            }
+            Entry<V> entry = new Entry<>(value, now());
+            entries.put(key, entry);
+            return entry;
+        }
+    }
+}
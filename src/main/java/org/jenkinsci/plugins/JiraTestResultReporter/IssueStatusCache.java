@@ -0,0 +1,220 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.atlassian.jira.rest.client.api.JiraRestClient;
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.atlassian.jira.rest.client.api.domain.SearchResult;
+import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.IssueSummary;
+import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.JiraRestClientExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache for the status of the issues linked to tests, shared by all the jobs, so that rendering the test results
+ * doesn't make a request to Jira for every linked test. A status older than the refresh time is still shown, while
+ * the new one is fetched in the background.
+ */
+public class IssueStatusCache {
+    /**
+     * What the test results show about an issue
+     */
+    public static class IssueStatus {
+        private final String status;
+        private final String summary;
+        private final String colorName;
+
+        /**
+         * Constructor
+         * @param status the status name
+         * @param summary the issue summary
+         * @param colorName the colour of the status category, can be null
+         */
+        public IssueStatus(String status, String summary, String colorName) {
+            this.status = status;
+            this.summary = summary;
+            this.colorName = colorName;
+        }
+
+        /**
+         * Constructor
+         * @param issue the issue
+         */
+        public IssueStatus(Issue issue) {
+            this(issue.getStatus().getName(), issue.getSummary(), getColorName(issue.getStatus().getName()));
+        }
+
+        /**
+         * Constructor
+         * @param issue the issue, fetched with only the status and the summary
+         */
+        public IssueStatus(IssueSummary issue) {
+            this(issue.getStatus(), issue.getSummary(),
+                    issue.getStatusColor() != null ? issue.getStatusColor() : getColorName(issue.getStatus()));
+        }
+
+        /**
+         * Getter for the colour of a status, from the status categories
+         * @param status the status name
+         * @return the colour name, null if the statuses were not fetched yet
+         */
+        static String getColorName(String status) {
+            StatusSnapshot statuses = JiraUtils.getJiraDescriptor().getStatusSnapshot();
+            return statuses != null ? statuses.getColorName(status) : null;
+        }
+
+        public String getStatus() { return status; }
+
+        public String getSummary() { return summary; }
+
+        public String getColorName() { return colorName; }
+    }
+
+    private static final String PROPERTY_PREFIX = IssueStatusCache.class.getName();
+    static final int MAX_SIZE = Integer.getInteger(PROPERTY_PREFIX + ".maxSize", 5000);
+    static final long TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(Integer.getInteger(PROPERTY_PREFIX + ".ttlMinutes", 60));
+    static final long REFRESH_AFTER = TimeUnit.SECONDS.toMillis(Integer.getInteger(PROPERTY_PREFIX + ".refreshSeconds", 60));
+    static final long NEGATIVE_TIME_TO_LIVE = TimeUnit.SECONDS.toMillis(30);
+    private static final int ISSUES_PER_QUERY = 50;
+    //the fields required by the rest client for parsing the issues
+    private static final Set<String> SEARCH_FIELDS = new HashSet<>(Arrays.asList(
+            "summary", "issuetype", "created", "updated", "project", "status"));
+
+    private final ExpiringCache<String, IssueStatus> issues =
+            new ExpiringCache<String, IssueStatus>("Issue status cache", MAX_SIZE, TIME_TO_LIVE, REFRESH_AFTER, NEGATIVE_TIME_TO_LIVE) {
+                @Override
+                protected IssueStatus load(String issueKey) throws Exception {
+                    JiraRestClientExtension restClientExtension = JiraUtils.getJiraDescriptor().getRestClientExtension();
+                    return restClientExtension != null
+                            ? new IssueStatus(restClientExtension.getIssueSummary(issueKey, false).claim()) : null;
+                }
+            };
+
+    /**
+     * Getter for the status of an issue
+     * @param issueKey the issue key
+     * @return the status, or null if the issue does not exist or Jira could not be reached
+     */
+    public IssueStatus getIssueStatus(String issueKey) {
+        if(issueKey == null) {
+            return null;
+        }
+        return issues.get(issueKey);
+    }
+
+    /**
+     * Getter for the status of an issue, only if it is already cached, so that it can be rendered without waiting
+     * for Jira
+     * @param issueKey the issue key
+     * @return the status, or null if it is not cached
+     */
+    public IssueStatus getCachedIssueStatus(String issueKey) {
+        if(issueKey == null) {
+            return null;
+        }
+        return issues.getCached(issueKey);
+    }
+
+    /**
+     * Getter for the status of several issues. The ones that are not cached are fetched with a single search
+     * for every {@value #ISSUES_PER_QUERY} issues.
+     * @param issueKeys the issue keys
+     * @return map from the issue keys to their status, without the issues that do not exist
+     */
+    public Map<String, IssueStatus> getIssueStatuses(Collection<String> issueKeys) {
+        Map<String, IssueStatus> statuses = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for(String issueKey : new LinkedHashSet<>(issueKeys)) {
+            IssueStatus status = issues.getCached(issueKey);
+            if(status != null) {
+                statuses.put(issueKey, status);
+            } else if(!issues.isCached(issueKey)) {
+                missing.add(issueKey);
+            }
+        }
+
+        JiraRestClient restClient = JiraUtils.getJiraDescriptor().getRestClient();
+        if(restClient == null) {
+            return statuses;
+        }
+
+        for(int i = 0; i < missing.size(); i += ISSUES_PER_QUERY) {
+            List<String> batch = missing.subList(i, Math.min(i + ISSUES_PER_QUERY, missing.size()));
+            String jql = new JqlBuilder().append("key in ").strings(batch).build();
+            try {
+                SearchResult searchResult = restClient.getSearchClient()
+                        .searchJql(jql, ISSUES_PER_QUERY, 0, SEARCH_FIELDS).claim();
+                for(Issue issue : searchResult.getIssues()) {
+                    IssueStatus status = new IssueStatus(issue);
+                    issues.put(issue.getKey(), status);
+                    statuses.put(issue.getKey(), status);
+                }
+            } catch (RestClientException e) {
+                //a deleted issue makes the whole query fail, fall back to loading the issues one by one
+                JiraUtils.logWarning("Could not search for the issues " + batch + ", loading them one by one", e);
+                for(String issueKey : batch) {
+                    IssueStatus status = issues.get(issueKey);
+                    if(status != null) {
+                        statuses.put(issueKey, status);
+                    }
+                }
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Updates the status of an issue, when it is known without asking Jira
+     * @param issueKey the issue key
+     * @param status the status
+     */
+    public void update(String issueKey, IssueStatus status) {
+        issues.put(issueKey, status);
+    }
+
+    /**
+     * Removes the cached status of an issue
+     * @param issueKey the issue key
+     */
+    public void invalidate(String issueKey) {
+        issues.invalidate(issueKey);
+    }
+
+    /**
+     * Removes all the cached statuses, called when the Jira server changes
+     */
+    public void clear() {
+        issues.invalidateAll();
+    }
+
+    /**
+     * Getter for the cache statistics
+     * @return the statistics
+     */
+    public ExpiringCache.Stats getStats() {
+        return issues.getStats();
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.atlassian.jira.rest.client.api.domain.input.FieldInput;
+import com.atlassian.jira.rest.client.api.domain.input.IssueInput;
+import com.atlassian.jira.rest.client.api.domain.input.IssueInputBuilder;
+import org.jenkinsci.plugins.JiraTestResultReporter.config.AbstractFields;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The global templates merged with the fields configured for a job. The merge is done once per job configuration:
+ * the fields configured in the job override the templates with the same key, the constant fields (selectable fields)
+ * are built only once, and only the other fields are rendered for each test.
+ */
+public class IssueTemplate {
+    private final String projectKey;
+    private final Long issueType;
+    private final List<FieldInput> constantFields;
+    private final List<AbstractFields> variableFields;
+
+    /**
+     * Merges the templates with the job configuration
+     * @param projectKey project key
+     * @param issueType issue type
+     * @param templates the global templates, can be overridden by the configs
+     * @param configs the fields configured for the job, can be null
+     * @return the compiled template
+     */
+    public static IssueTemplate compile(String projectKey, Long issueType, List<AbstractFields> templates,
+                                        List<AbstractFields> configs) {
+        //the fields without a key cannot override each other, they are kept under a key of their own
+        Map<Object, AbstractFields> fields = new LinkedHashMap<>();
+        for(AbstractFields f : templates) {
+            fields.put(f.getFieldKey() != null ? f.getFieldKey() : new Object(), f);
+        }
+        if(configs != null) {
+            for(AbstractFields f : configs) {
+                fields.put(f.getFieldKey() != null ? f.getFieldKey() : new Object(), f);
+            }
+        }
+
+        List<FieldInput> constantFields = new ArrayList<>();
+        List<AbstractFields> variableFields = new ArrayList<>();
+        for(AbstractFields f : fields.values()) {
+            if(f.isConstant()) {
+                constantFields.add(f.getFieldInput(null, null));
+            } else {
+                variableFields.add(f);
+            }
+        }
+        return new IssueTemplate(projectKey, issueType, constantFields, variableFields);
+    }
+
+    private IssueTemplate(String projectKey, Long issueType, List<FieldInput> constantFields,
+                          List<AbstractFields> variableFields) {
+        this.projectKey = projectKey;
+        this.issueType = issueType;
+        this.constantFields = Collections.unmodifiableList(constantFields);
+        this.variableFields = Collections.unmodifiableList(variableFields);
+    }
+
+    /**
+     * Getter for the fields that are the same for every test
+     * @return the prebuilt FieldInputs
+     */
+    public List<FieldInput> getConstantFields() {
+        return constantFields;
+    }
+
+    /**
+     * Getter for the fields rendered for each test
+     * @return the fields with variables
+     */
+    public List<AbstractFields> getVariableFields() {
+        return variableFields;
+    }
+
+    /**
+     * Getter for the names of the variables used by the fields. They are collected every time, because the default
+     * summary and description can change in the global configuration.
+     * @return the variable names
+     */
+    public Set<String> getVariables() {
+        Set<String> variables = new HashSet<>();
+        for(AbstractFields f : variableFields) {
+            f.collectVariables(variables);
+        }
+        return variables;
+    }
+
+    /**
+     * Creates the IssueInput for a test
+     * @param context the expansion context of the test
+     * @return the IssueInput
+     */
+    public IssueInput createIssueInput(ExpansionContext context) {
+        IssueInputBuilder newIssueBuilder = new IssueInputBuilder(projectKey, issueType);
+        for(FieldInput fieldInput : constantFields) {
+            newIssueBuilder.setFieldInput(fieldInput);
+        }
+        for(AbstractFields f : variableFields) {
+            newIssueBuilder.setFieldInput(context.getFieldInput(f));
+        }
+        return newIssueBuilder.build();
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.atlassian.jira.rest.client.api.JiraRestClient;
+import com.atlassian.jira.rest.client.auth.BasicHttpAuthenticationHandler;
+import com.atlassian.jira.rest.client.internal.async.AsynchronousHttpClientFactory;
+import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClient;
+import com.atlassian.jira.rest.client.internal.async.DisposableHttpClient;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.JiraRestClientExtension;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The clients for a Jira server. The rest client and its extension share the same HTTP client, so there is a single
+ * connection pool and a single set of IO threads per server. The HTTP client must be closed when the connection is
+ * not used anymore, otherwise its threads and connections are leaked.
+ */
+public class JiraConnection {
+    /**
+     * Time given to the requests already started with a replaced connection, before it is closed
+     */
+    static final long CLOSE_DELAY = TimeUnit.SECONDS.toMillis(Integer.getInteger(JiraConnection.class.getName() + ".closeDelaySeconds", 60));
+
+    private static final AtomicLong OPENED = new AtomicLong();
+    private static final AtomicLong CLOSED = new AtomicLong();
+    private static final AtomicInteger OPEN = new AtomicInteger();
+
+    /**
+     * Snapshot of the number of connections opened and closed since Jenkins started
+     */
+    public static class Stats {
+        private final long opened;
+        private final long closed;
+        private final int open;
+
+        Stats(long opened, long closed, int open) {
+            this.opened = opened;
+            this.closed = closed;
+            this.open = open;
+        }
+
+        public long getOpened() { return opened; }
+
+        public long getClosed() { return closed; }
+
+        /**
+         * Getter for the number of connections not closed yet, more than one only while a replaced connection is
+         * waiting to be closed, or while the global configuration is validated
+         * @return the number of open connections
+         */
+        public int getOpen() { return open; }
+
+        @Override
+        public String toString() {
+            return String.format("opened: %d, closed: %d, open: %d", opened, closed, open);
+        }
+    }
+
+    private final URI uri;
+    private final DisposableHttpClient httpClient;
+    private final JiraRestClient restClient;
+    private final JiraRestClientExtension restClientExtension;
+    private final AtomicInteger closed = new AtomicInteger();
+
+    private JiraConnection(URI uri, DisposableHttpClient httpClient) {
+        this.uri = uri;
+        this.httpClient = httpClient;
+        this.restClient = new AsynchronousJiraRestClient(uri, httpClient);
+        this.restClientExtension = new JiraRestClientExtension(uri, httpClient);
+    }
+
+    /**
+     * Opens a connection to a Jira server, with basic authentication
+     * @param uri the server URI
+     * @param username the username
+     * @param password the password
+     * @return the connection
+     */
+    public static JiraConnection open(URI uri, String username, String password) {
+        DisposableHttpClient httpClient = new AsynchronousHttpClientFactory().createClient(uri,
+                new BasicHttpAuthenticationHandler(username, password));
+        OPENED.incrementAndGet();
+        OPEN.incrementAndGet();
+        return new JiraConnection(uri, httpClient);
+    }
+
+    public URI getUri() { return uri; }
+
+    public JiraRestClient getRestClient() { return restClient; }
+
+    public JiraRestClientExtension getRestClientExtension() { return restClientExtension; }
+
+    /**
+     * Closes the HTTP client, the requests in progress fail
+     */
+    public void close() {
+        if(!closed.compareAndSet(0, 1)) {
+            return;
+        }
+        try {
+            httpClient.destroy();
+        } catch (Exception e) {
+            JiraUtils.logWarning("WARNING: Could not close the HTTP client for " + uri, e);
+        } finally {
+            CLOSED.incrementAndGet();
+            OPEN.decrementAndGet();
+        }
+    }
+
+    /**
+     * Closes the HTTP client after {@link #CLOSE_DELAY}, for connections replaced while they may still be in use
+     */
+    public void closeLater() {
+        Timer.get().schedule(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        }, CLOSE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Getter for the connection statistics
+     * @return the statistics
+     */
+    public static Stats getStats() {
+        return new Stats(OPENED.get(), CLOSED.get(), OPEN.get());
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of threads for the background work that waits for Jira, like the cache refreshes and the metadata
+ * prefetch. The Jenkins Timer is shared by the whole instance and meant for short tasks, while a createmeta or a
+ * search request can take seconds. When the queue is full, new tasks are rejected instead of piling up.
+ */
+public class JiraExecutor {
+    private static final String PROPERTY_PREFIX = JiraExecutor.class.getName();
+    static final int THREADS = Math.max(1, Integer.getInteger(PROPERTY_PREFIX + ".threads", 4));
+    static final int QUEUE_SIZE = Math.max(1, Integer.getInteger(PROPERTY_PREFIX + ".queueSize", 1000));
+
+    private static final ExecutorService EXECUTOR;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "JiraTestResultReporter worker #" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        //the threads are only kept while there is work to do
+        executor.allowCoreThreadTimeOut(true);
+        EXECUTOR = executor;
+    }
+
+    private JiraExecutor() {
+    }
+
+    /**
+     * Getter for the executor
+     * @return the executor, it throws RejectedExecutionException when its queue is full
+     */
+    public static ExecutorService get() {
+        return EXECUTOR;
+    }
+}
@@ -15,38 +15,39 @@
  */
 package org.jenkinsci.plugins.JiraTestResultReporter;
 
-import com.atlassian.jira.rest.client.api.IssueRestClient;
 import com.atlassian.jira.rest.client.api.RestClientException;
-import com.atlassian.jira.rest.client.api.domain.Issue;
 import com.atlassian.jira.rest.client.api.domain.input.IssueInput;
 import com.atlassian.util.concurrent.Promise;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.ExtensionPoint;
-import hudson.matrix.MatrixProject;
 import hudson.model.*;
 import hudson.tasks.junit.CaseResult;
 import hudson.tasks.junit.TestAction;
+import hudson.tasks.junit.TestResultAction;
 import hudson.util.FormValidation;
 import jenkins.model.Jenkins;
-import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.FullStatus;
-import org.kohsuke.stapler.Ancestor;
-import org.kohsuke.stapler.Stapler;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.IssueSummary;
+import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.JiraRestClientExtension;
 import org.kohsuke.stapler.bind.JavaScriptMethod;
 
-import java.util.List;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by tuicu.
  */
 public class JiraTestAction extends TestAction implements ExtensionPoint, Describable<JiraTestAction> {
+    static final int MAX_STATUS_KEYS = Integer.getInteger(JiraTestAction.class.getName() + ".maxStatusKeys", 500);
 
-    private String issueKey = null;
     private CaseResult test;
     private JiraTestData testData;
-    private String issueStatus;
-    private String statusColor;
-    private String issueSummary;
     private Job job; //the same as project if it's not a matrix build
     private AbstractProject project;
 
@@ -55,14 +56,45 @@ public class JiraTestAction extends TestAction implements ExtensionPoint, Descri
      * @return string representing the issue status
      */
     public String getIssueStatus() {
-        return issueStatus;
+        IssueStatusCache.IssueStatus status = getCachedIssueStatus();
+        return status != null ? status.getStatus() : null;
     }
 
     /**
      * Getter for issue color, called from issueStatus.jelly
      * @return String representing the issue color
      */
-    public String getStatusColor() { return statusColor; }
+    public String getStatusColor() {
+        IssueStatusCache.IssueStatus status = getCachedIssueStatus();
+        return status != null ? status.getColorName() : null;
+    }
+
+    /**
+     * Getter for the time when the shown status was recorded, called from badge.jelly
+     * @return the time, or null if the status is not the recorded one
+     */
+    public Date getIssueStatusTime() {
+        String issueKey = getIssueKey();
+        if(issueKey == null || JiraUtils.getJiraDescriptor().getCachedIssueStatus(issueKey) != null
+                || testData.getRecordedIssueStatus(test.getId(), issueKey) == null) {
+            return null;
+        }
+        return testData.getLinkedIssuesTime();
+    }
+
+    /**
+     * Getter for the status of the linked issue. The cached one is preferred, then the one recorded when the build
+     * was published. If none of them is available, it is fetched by badge.jelly after the page is rendered.
+     * @return the status, or null
+     */
+    private IssueStatusCache.IssueStatus getCachedIssueStatus() {
+        String issueKey = getIssueKey();
+        if(issueKey == null) {
+            return null;
+        }
+        IssueStatusCache.IssueStatus status = JiraUtils.getJiraDescriptor().getCachedIssueStatus(issueKey);
+        return status != null ? status : testData.getRecordedIssueStatus(test.getId(), issueKey);
+    }
 
     /**
      * Getter for environment variables
@@ -82,56 +114,20 @@ public class JiraTestAction extends TestAction implements ExtensionPoint, Descri
 
 
     /**
-     * Constructor
+     * Constructor. The actions are kept by JiraTestData for as long as the build is shown, so the link and the
+     * status of the issue are looked up every time they are rendered.
      * @param testData the JiraTestData
      * @param test the JUnit test associated with this TestAction
      */
     public JiraTestAction(JiraTestData testData, CaseResult test) {
-        project = initProject();
-        if(project instanceof MatrixProject) {
-            job = (Job) Jenkins.getInstance().getItemByFullName(testData.getEnvVars().get("JOB_NAME"));
-        } else {
-            job = project;
-        }
+        project = testData.getProject();
+        job = testData.getJob();
 
         if(project == null || job == null)
             return; //fix for interaction with Test stability history plugin
 
         this.testData = testData;
         this.test = test;
-        issueKey = TestToIssueMapping.getInstance().getTestIssueKey(job, test.getId());
-        if (issueKey != null) {
-            IssueRestClient issueRestClient = JiraUtils.getJiraDescriptor().getRestClient().getIssueClient();
-            try {
-                Issue issue = issueRestClient.getIssue(issueKey).claim();
-                issueStatus = issue.getStatus().getName();
-                issueSummary = issue.getSummary();
-                JiraTestDataPublisher.JiraTestDataPublisherDescriptor jiraDescriptor = JiraUtils.getJiraDescriptor();
-                if (jiraDescriptor.getStatusesMap() != null) {
-                    FullStatus status = jiraDescriptor.getStatusesMap().get(issueStatus);
-                    statusColor = status != null ? status.getColorName() : null;
-                }
-            } catch (Exception e) {
-                JiraUtils.logError("The issue might be deleted, or there is no internet connection, etc.", e);
-            }
-        }
-    }
-
-    /**
-     * Method for initializing the project. Used in constructor only.
-     * @return initialized project.
-     */
-    private AbstractProject initProject() {
-        if(Stapler.getCurrentRequest() == null)
-            return null;
-
-        List<Ancestor> ancestors = Stapler.getCurrentRequest().getAncestors();
-        for (Ancestor ancestor : ancestors) {
-            if(ancestor.getObject() instanceof AbstractProject) {
-                return (AbstractProject) ancestor.getObject();
-            }
-        }
-        return null;
     }
 
     /**
@@ -139,14 +135,16 @@ public class JiraTestAction extends TestAction implements ExtensionPoint, Descri
      * @return the issue key.
      */
     public String getIssueKey() {
-        return issueKey;
+        if(job == null)
+            return null;
+        return TestToIssueMapping.getInstance().getTestIssueKey(job, test.getId());
     }
 
     /**
      * Getter for the issue URL, called from badge.jelly
      * @return the issue URL as a String.
      */
-    public String getIssueUrl() { return JiraUtils.getIssueURL(JiraUtils.getJiraDescriptor().getJiraUrl(), issueKey); }
+    public String getIssueUrl() { return JiraUtils.getIssueURL(JiraUtils.getJiraDescriptor().getJiraUrl(), getIssueKey()); }
 
     /**
      * Getter to find is the test is failing
@@ -160,7 +158,10 @@ public class JiraTestAction extends TestAction implements ExtensionPoint, Descri
      * The issue summary.
      * @return issue summary.
      */
-    public String getIssueSummary() { return issueSummary; }
+    public String getIssueSummary() {
+        IssueStatusCache.IssueStatus status = getCachedIssueStatus();
+        return status != null ? status.getSummary() : null;
+    }
 
     /**
      * Method for linking an issue to this test, called from badge.jelly
@@ -174,7 +175,6 @@ public class JiraTestAction extends TestAction implements ExtensionPoint, Descri
                 return null;
             }
             if (isValidIssueKey(issueKey)) {
-                this.issueKey = issueKey;
                 TestToIssueMapping.getInstance().addTestToIssueMapping(job, test.getId(), issueKey);
                 return null;
             }
@@ -187,8 +187,76 @@ public class JiraTestAction extends TestAction implements ExtensionPoint, Descri
      */
     @JavaScriptMethod
     public void clearIssueKey() {
-        TestToIssueMapping.getInstance().removeTestToIssueMapping(job, test.getId(), issueKey);
-        issueKey = null;
+        TestToIssueMapping.getInstance().removeTestToIssueMapping(job, test.getId(), getIssueKey());
+    }
+
+    /**
+     * Method for fetching again the status of the issues linked to the tests of this build and recording it,
+     * called from badge.jelly. The build is saved, so the permission to update it is required.
+     */
+    @JavaScriptMethod
+    public void refreshIssueStatuses() {
+        Run run = test.getRun();
+        run.checkPermission(Run.UPDATE);
+        TestResultAction testResultAction = run.getAction(TestResultAction.class);
+        if(testResultAction == null) {
+            return;
+        }
+
+        testData.recordLinkedIssues(job, JiraTestDataPublisher.getTestCaseResults(testResultAction.getResult()), true);
+        try {
+            run.save();
+        } catch (IOException e) {
+            JiraUtils.logError("Could not save the issue statuses of " + run.getFullDisplayName(), e);
+        }
+    }
+
+    /**
+     * Method for getting the status of the issues linked to the tests shown on a page, called once from badge.jelly
+     * for every job shown on the page, after it is rendered. Only the issues linked to the tests of the job of this
+     * build are answered, at most {@value #MAX_STATUS_KEYS} of them.
+     * @param issueKeys comma separated issue keys
+     * @return object mapping the issue keys to their status, summary and status color
+     */
+    @JavaScriptMethod
+    public JSONObject getIssueStatuses(String issueKeys) {
+        test.getRun().getParent().checkPermission(Item.READ);
+        JSONObject result = new JSONObject();
+        if(issueKeys == null || issueKeys.isEmpty()) {
+            return result;
+        }
+
+        Set<String> linkedIssueKeys = new HashSet<>(TestToIssueMapping.getInstance().getTestToIssueMap(job).values());
+        Map<String, IssueStatusCache.IssueStatus> statuses = JiraUtils.getJiraDescriptor().getIssueStatusCache()
+                .getIssueStatuses(getLinkedIssueKeys(issueKeys, linkedIssueKeys, MAX_STATUS_KEYS));
+        for(Map.Entry<String, IssueStatusCache.IssueStatus> entry : statuses.entrySet()) {
+            JSONObject status = new JSONObject();
+            status.put("status", entry.getValue().getStatus());
+            status.put("summary", entry.getValue().getSummary());
+            status.put("color", entry.getValue().getColorName());
+            result.put(entry.getKey(), status);
+        }
+        return result;
+    }
+
+    /**
+     * Keeps the requested issue keys that are linked to tests of the job
+     * @param issueKeys comma separated issue keys
+     * @param linkedIssueKeys the issue keys linked to the tests of the job
+     * @param max the maximum number of keys kept, the rest are dropped
+     * @return the requested keys that are linked, without duplicates
+     */
+    static Collection<String> getLinkedIssueKeys(String issueKeys, Set<String> linkedIssueKeys, int max) {
+        Set<String> result = new LinkedHashSet<>();
+        for(String issueKey : issueKeys.split(",")) {
+            if(result.size() >= max) {
+                break;
+            }
+            if(linkedIssueKeys.contains(issueKey)) {
+                result.add(issueKey);
+            }
+        }
+        return result;
     }
 
     /**
@@ -237,7 +305,6 @@ public class JiraTestAction extends TestAction implements ExtensionPoint, Descri
         public String getDisplayName() {
             return clazz.getSimpleName();
         }
-
     }
 
     /**
@@ -251,6 +318,14 @@ public class JiraTestAction extends TestAction implements ExtensionPoint, Descri
                 return null;
             }
 
+            //only the variables used by the templates when the build was published are kept
+            Set<String> unresolved = VariableExpander.getUnresolvedVariables(
+                    JiraUtils.getIssueTemplate(project).getVariables(), testData.getEnvVars());
+            if(!unresolved.isEmpty()) {
+                JiraUtils.logWarning("The variables " + unresolved + " are not recorded for "
+                        + test.getRun().getFullDisplayName() + ", they are left unexpanded");
+            }
+
             try {
                 IssueInput issueInput = JiraUtils.createIssueInput(project, test, testData.getEnvVars());
                 String issueKey = JiraUtils.createIssue(issueInput);
@@ -270,10 +345,11 @@ public class JiraTestAction extends TestAction implements ExtensionPoint, Descri
     public boolean isValidIssueKey(String issueKey) {
         if(JobConfigMapping.getInstance().getIssueKeyPattern(project).matcher(issueKey).matches() == false)
             return false;
-        IssueRestClient restClient = JiraUtils.getJiraDescriptor().getRestClient().getIssueClient();
+        JiraRestClientExtension restClient = JiraUtils.getJiraDescriptor().getRestClientExtension();
         try {
-            Promise<Issue> issuePromise = restClient.getIssue(issueKey);
-            Issue issue = issuePromise.claim();
+            Promise<IssueSummary> issuePromise = restClient.getIssueSummary(issueKey, false);
+            IssueSummary issue = issuePromise.claim();
+            JiraUtils.getJiraDescriptor().getIssueStatusCache().update(issueKey, new IssueStatusCache.IssueStatus(issue));
         }catch (RestClientException e) {
             JiraUtils.logError("Error when validating issue", e);
             return false;
@@ -15,20 +15,80 @@
  */
 package org.jenkinsci.plugins.JiraTestResultReporter;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import hudson.EnvVars;
+import hudson.matrix.MatrixProject;
+import hudson.model.AbstractProject;
+import hudson.model.Job;
 import hudson.tasks.junit.CaseResult;
 import hudson.tasks.junit.TestAction;
 import hudson.tasks.junit.TestObject;
 import hudson.tasks.junit.TestResultAction;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.Ancestor;
+import org.kohsuke.stapler.Stapler;
 
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by tuicu.
  */
 public class JiraTestData extends TestResultAction.Data {
+    /**
+     * The issue linked to a test and its status, as they were when they were recorded
+     */
+    public static class LinkedIssue {
+        private final String issueKey;
+        private final String status;
+        private final String summary;
+
+        public LinkedIssue(String issueKey, String status, String summary) {
+            this.issueKey = issueKey;
+            this.status = status;
+            this.summary = summary;
+        }
+
+        public String getIssueKey() { return issueKey; }
+
+        public String getStatus() { return status; }
+
+        public String getSummary() { return summary; }
+    }
+
+    static final int MAX_TEST_ACTIONS = Integer.getInteger(JiraTestData.class.getName() + ".maxTestActions", 1000);
+    /**
+     * Variables kept even if the templates don't use them, JOB_NAME is needed for finding the job of matrix builds
+     */
+    static final List<String> REQUIRED_VARIABLES = Collections.singletonList("JOB_NAME");
+    /**
+     * The values of the variables are mostly the same from one build to the next, so they are shared by all the
+     * loaded builds
+     */
+    private static final Interner<String> VALUES = Interners.newWeakInterner();
+
     private final EnvVars envVars;
+    /**
+     * Map from the test ids to the issues linked to them, recorded when the build was published, so that old builds
+     * can be shown without asking Jira. Null for the builds published before this was introduced.
+     */
+    private volatile Map<String, LinkedIssue> linkedIssues;
+    private volatile long linkedIssuesTime;
+    private transient volatile AbstractProject project;
+    private transient volatile Job job; //the same as project if it's not a matrix build
+    /**
+     * The actions created for the tests of this build, so that they are not created again every time the test
+     * results are rendered. The least recently used ones are dropped first, and all of them when memory is low.
+     */
+    private transient Map<String, SoftReference<JiraTestAction>> testActions;
 
     /**
      * Constructor
@@ -38,6 +98,45 @@ public class JiraTestData extends TestResultAction.Data {
         this.envVars = envVars;
     }
 
+    /**
+     * Constructor, keeping only the environment variables used by the templates, so that the whole environment of
+     * the build is not saved with the test results
+     * @param envVars environment variables associated with this build
+     * @param variables names of the variables used by the templates
+     */
+    public JiraTestData(EnvVars envVars, Collection<String> variables) {
+        this.envVars = new EnvVars();
+        for (String name : variables) {
+            copyVariable(envVars, name);
+        }
+        for (String name : REQUIRED_VARIABLES) {
+            copyVariable(envVars, name);
+        }
+    }
+
+    private void copyVariable(EnvVars from, String name) {
+        String value = from.get(name);
+        if (value != null) {
+            envVars.put(name, VALUES.intern(value));
+        }
+    }
+
+    /**
+     * Method called when the build is loaded. The builds published before only the used variables were kept have
+     * the whole environment, the values are interned so that the loaded builds share them.
+     * @return this
+     */
+    protected Object readResolve() {
+        if (envVars != null) {
+            for (Map.Entry<String, String> entry : envVars.entrySet()) {
+                if (entry.getValue() != null) {
+                    entry.setValue(VALUES.intern(entry.getValue()));
+                }
+            }
+        }
+        return this;
+    }
+
     /**
      * Getter for the environment variables
      * @return environment variables map
@@ -47,6 +146,65 @@ public class JiraTestData extends TestResultAction.Data {
     }
 
 
+    /**
+     * Records the issues linked to the tests and their status. The statuses that are not cached are fetched
+     * in batches.
+     * @param job the job of the build, the configuration for matrix builds
+     * @param tests the tests of the build
+     * @param refresh true to fetch all the statuses again, ignoring the cached ones
+     */
+    public void recordLinkedIssues(Job job, Collection<CaseResult> tests, boolean refresh) {
+        List<String> testIds = new ArrayList<>(tests.size());
+        for (CaseResult test : tests) {
+            testIds.add(test.getId());
+        }
+
+        Map<String, String> issueKeys = TestToIssueMapping.getInstance().getTestIssueKeys(job, testIds);
+        IssueStatusCache issueStatusCache = JiraUtils.getJiraDescriptor().getIssueStatusCache();
+        if (refresh) {
+            for (String issueKey : issueKeys.values()) {
+                issueStatusCache.invalidate(issueKey);
+            }
+        }
+
+        Map<String, IssueStatusCache.IssueStatus> statuses = issueStatusCache.getIssueStatuses(issueKeys.values());
+        Map<String, LinkedIssue> linkedIssues = new HashMap<>();
+        for (Map.Entry<String, String> entry : issueKeys.entrySet()) {
+            IssueStatusCache.IssueStatus status = statuses.get(entry.getValue());
+            if (status != null) {
+                linkedIssues.put(entry.getKey(), new LinkedIssue(entry.getValue(), status.getStatus(), status.getSummary()));
+            }
+        }
+        this.linkedIssues = linkedIssues;
+        this.linkedIssuesTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Getter for the recorded status of the issue linked to a test
+     * @param testId the test id
+     * @param issueKey the issue currently linked to the test, the recorded status is ignored if it's for another one
+     * @return the status, or null if it was not recorded
+     */
+    public IssueStatusCache.IssueStatus getRecordedIssueStatus(String testId, String issueKey) {
+        Map<String, LinkedIssue> linkedIssues = this.linkedIssues;
+        LinkedIssue linkedIssue = linkedIssues != null ? linkedIssues.get(testId) : null;
+        if (linkedIssue == null || !linkedIssue.getIssueKey().equals(issueKey)) {
+            return null;
+        }
+
+        StatusSnapshot statuses = JiraUtils.getJiraDescriptor().getStatusSnapshot();
+        return new IssueStatusCache.IssueStatus(linkedIssue.getStatus(), linkedIssue.getSummary(),
+                statuses != null ? statuses.getColorName(linkedIssue.getStatus()) : null);
+    }
+
+    /**
+     * Getter for the time when the linked issues were recorded
+     * @return the time, or null if they were never recorded
+     */
+    public Date getLinkedIssuesTime() {
+        return linkedIssues != null ? new Date(linkedIssuesTime) : null;
+    }
+
     /**
      * Method for creating test actions associated with tests
      * @param testObject the TestObject.
@@ -56,10 +214,89 @@ public class JiraTestData extends TestResultAction.Data {
     public List<? extends TestAction> getTestAction(TestObject testObject) {
         if (testObject instanceof CaseResult) {
             CaseResult test = (CaseResult) testObject;
-            return Collections.singletonList(new JiraTestAction(this, test));
+            if (getJob() == null) {
+                return Collections.singletonList(new JiraTestAction(this, test));
+            }
+            return Collections.singletonList(getTestAction(test));
         }
 
         return Collections.emptyList();
     }
 
+    /**
+     * Getter for the action of a test, created only the first time it is needed
+     * @param test the test
+     * @return the test action
+     */
+    private synchronized JiraTestAction getTestAction(CaseResult test) {
+        if (testActions == null) {
+            testActions = new LinkedHashMap<String, SoftReference<JiraTestAction>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SoftReference<JiraTestAction>> eldest) {
+                    return size() > MAX_TEST_ACTIONS;
+                }
+            };
+        }
+
+        SoftReference<JiraTestAction> reference = testActions.get(test.getId());
+        JiraTestAction action = reference != null ? reference.get() : null;
+        //the test results are loaded again after they are garbage collected, don't keep the old ones alive
+        if (action == null || action.getTest() != test) {
+            action = new JiraTestAction(this, test);
+            testActions.put(test.getId(), new SoftReference<>(action));
+        }
+        return action;
+    }
+
+    /**
+     * Getter for the project of this build, found from the current request the first time it is needed
+     * @return the project, or null if it is not known yet
+     */
+    public AbstractProject getProject() {
+        if (project == null) {
+            resolveJob();
+        }
+        return project;
+    }
+
+    /**
+     * Getter for the job of this build, the configuration for matrix builds
+     * @return the job, or null if it is not known yet
+     */
+    public Job getJob() {
+        if (job == null) {
+            resolveJob();
+        }
+        return job;
+    }
+
+    /**
+     * Method for finding the project and the job of this build, from the ancestors of the current request
+     */
+    private void resolveJob() {
+        if (Stapler.getCurrentRequest() == null)
+            return;
+
+        AbstractProject project = null;
+        List<Ancestor> ancestors = Stapler.getCurrentRequest().getAncestors();
+        for (Ancestor ancestor : ancestors) {
+            if (ancestor.getObject() instanceof AbstractProject) {
+                project = (AbstractProject) ancestor.getObject();
+                break;
+            }
+        }
+
+        Job job;
+        if (project instanceof MatrixProject) {
+            job = (Job) Jenkins.getInstance().getItemByFullName(envVars.get("JOB_NAME"));
+        } else {
+            job = project;
+        }
+
+        if (project != null && job != null) {
+            this.project = project;
+            this.job = job;
+        }
+    }
+
 }
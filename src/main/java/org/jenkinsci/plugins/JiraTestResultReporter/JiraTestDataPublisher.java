@@ -17,13 +17,9 @@ package org.jenkinsci.plugins.JiraTestResultReporter;
 
 import com.atlassian.jira.rest.client.api.*;
 import com.atlassian.jira.rest.client.api.domain.*;
-import com.atlassian.jira.rest.client.api.domain.Project;
 import com.atlassian.jira.rest.client.api.domain.input.IssueInput;
 import com.atlassian.jira.rest.client.api.domain.input.IssueInputBuilder;
 import com.atlassian.jira.rest.client.api.domain.input.TransitionInput;
-import com.atlassian.jira.rest.client.auth.BasicHttpAuthenticationHandler;
-import com.atlassian.jira.rest.client.internal.async.AsynchronousHttpClientFactory;
-import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClientFactory;
 import com.atlassian.util.concurrent.Promise;
 
 import hudson.*;
@@ -39,6 +35,7 @@ import net.sf.json.JSONObject;
 import org.jenkinsci.plugins.JiraTestResultReporter.config.AbstractFields;
 import org.jenkinsci.plugins.JiraTestResultReporter.config.StringFields;
 import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.FullStatus;
+import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.IssueSummary;
 import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.JiraRestClientExtension;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
@@ -56,9 +53,13 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Created by tuicu.
@@ -216,18 +217,31 @@ public class JiraTestDataPublisher extends TestDataPublisher
             project = (AbstractProject) job;
         }
 
+        List<CaseResult> testCaseResults = getTestCaseResults(testResult);
         if (JobConfigMapping.getInstance().getAutoRaiseIssue(project))
         {
-            raiseIssues(listener, project, job, envVars,
-                    getTestCaseResults(testResult));
+            raiseIssues(listener, project, job, envVars, testCaseResults);
         }
 
         if (JobConfigMapping.getInstance().getAutoResolveIssue(project))
         {
-            resolveIssues(listener, project, job, envVars,
-                    getTestCaseResults(testResult));
+            resolveIssues(listener, project, job, envVars, testCaseResults);
         }
-        return new JiraTestData(envVars);
+
+        //only the variables used by the templates are needed for creating issues later, from the test results page
+        Set<String> variables = JiraUtils.getIssueTemplate(project).getVariables();
+        JiraTestData testData = new JiraTestData(envVars, variables);
+        try
+        {
+            //recorded so that the test results of this build can be shown later without asking Jira
+            testData.recordLinkedIssues(job, testCaseResults, false);
+        }
+        catch (RuntimeException e)
+        {
+            listener.error("Could not record the status of the linked issues");
+            e.printStackTrace(listener.getLogger());
+        }
+        return testData;
     }
 
     private void resolveIssues(TaskListener listener, AbstractProject project,
@@ -248,16 +262,28 @@ public class JiraTestDataPublisher extends TestDataPublisher
                             .getTestIssueKey(job, test.getId());
                     IssueRestClient issueRestClient = getDescriptor()
                             .getRestClient().getIssueClient();
-                    Issue issue = issueRestClient.getIssue(issueKey).claim();
+                    JiraRestClientExtension restClientExtension = getDescriptor()
+                            .getRestClientExtension();
+                    //only the transitions are needed, not the whole issue
+                    IssueSummary issue = restClientExtension
+                            .getIssueSummary(issueKey, true).claim();
                     boolean transitionExecuted = false;
-                    for (Transition transition : issueRestClient
-                            .getTransitions(issue).claim())
+                    for (IssueSummary.Transition transition : issue.getTransitions())
                     {
-                        if (transition.getName().toLowerCase()
+                        if (transition.getName() != null && transition.getName().toLowerCase()
                                 .contains("resolve"))
                         {
-                            issueRestClient.transition(issue,
-                                    new TransitionInput(transition.getId()));
+                            //waited for, so that the status recorded for this build is the new one
+                            try
+                            {
+                                issueRestClient.transition(
+                                        restClientExtension.getTransitionsUri(issueKey),
+                                        new TransitionInput(Integer.parseInt(transition.getId()))).claim();
+                            }
+                            finally
+                            {
+                                getDescriptor().getIssueStatusCache().invalidate(issueKey);
+                            }
                             transitionExecuted = true;
                             break;
                         }
@@ -321,11 +347,13 @@ public class JiraTestDataPublisher extends TestDataPublisher
                         }
                         else
                         {
-                        	IssueInput issueInput = JiraUtils.createIssueInput(project, test, envVars);
+                            //the variables are expanded once and shared by the issue and the duplicate search
+                            ExpansionContext context = new ExpansionContext(test, envVars);
+                        	IssueInput issueInput = JiraUtils.createIssueInput(project, context);
                             boolean foundDuplicate = false;
                             if (JobConfigMapping.getInstance().getPreventDuplicateIssue(project))
                             {
-                                SearchResult searchResult = JiraUtils.findIssues(project, test, envVars, issueInput);
+                                SearchResult searchResult = JiraUtils.findIssues(project, context, issueInput);
                                 if (searchResult != null)
                                 {
                                     for (Issue issue : searchResult.getIssues())
@@ -366,7 +394,7 @@ public class JiraTestDataPublisher extends TestDataPublisher
         }
     }
 
-    private List<CaseResult> getTestCaseResults(TestResult testResult)
+    static List<CaseResult> getTestCaseResults(TestResult testResult)
     {
         List<CaseResult> results = new ArrayList<>();
 
@@ -419,6 +447,10 @@ public class JiraTestDataPublisher extends TestDataPublisher
 
         private static final String DEFAULT_SUMMARY = "${TEST_FULL_NAME} : ${TEST_ERROR_DETAILS}";
         private static final String DEFAULT_DESCRIPTION = "${BUILD_URL}${CRLF}${TEST_STACK_TRACE}";
+        private static final int DEFAULT_COMPACTION_BUILDS_TO_SCAN = 10;
+        private static final int DEFAULT_STATUS_REFRESH_MINUTES = 60;
+        //retry interval when the statuses could not be fetched at all
+        private static final long STATUS_RETRY_INTERVAL = TimeUnit.MINUTES.toMillis(5);
         public static final List<AbstractFields> TEMPLATES;
 
         static
@@ -429,15 +461,28 @@ public class JiraTestDataPublisher extends TestDataPublisher
                     "${DEFAULT_DESCRIPTION}"));
         }
 
-        private transient Map<String, FullStatus> statuses;
-        private transient JiraRestClient restClient;
-        private transient JiraRestClientExtension restClientExtension;
+        private final transient AtomicReference<StatusSnapshot> statusSnapshot = new AtomicReference<>();
+        private final transient AtomicBoolean refreshingStatuses = new AtomicBoolean();
+        private transient volatile long lastStatusRefresh;
+        private transient volatile JiraConnection connection;
         private final transient MetadataCache metadataCache = new MetadataCache();
+        private final transient ProjectCache projectCache = new ProjectCache();
+        private final transient UserCache userCache = new UserCache();
+        private final transient IssueStatusCache issueStatusCache = new IssueStatusCache();
         private URI jiraUri = null;
         private String username = null;
         private Secret password = null;
         private String defaultSummary;
         private String defaultDescription;
+        private boolean compactionEnabled;
+        private boolean compactionDryRun;
+        private boolean pruneClosedIssues;
+        private boolean pruneMissingTests;
+        private int compactionBuildsToScan;
+        private boolean prefetchMetadata;
+        private int statusRefreshMinutes;
+        private Secret webhookSecret;
+        private boolean webhookUnlinkDeleted;
 
         public URI getJiraUri()
         {
@@ -461,7 +506,45 @@ public class JiraTestDataPublisher extends TestDataPublisher
 
         public JiraRestClient getRestClient()
         {
-            return restClient;
+            JiraConnection connection = this.connection;
+            return connection != null ? connection.getRestClient() : null;
+        }
+
+        /**
+         * Getter for the rest client extension, sharing the HTTP client of the rest client
+         *
+         * @return the rest client extension, null if the server is not configured
+         */
+        public JiraRestClientExtension getRestClientExtension()
+        {
+            JiraConnection connection = this.connection;
+            return connection != null ? connection.getRestClientExtension() : null;
+        }
+
+        /**
+         * Getter for the statistics of the connections to Jira
+         *
+         * @return the statistics
+         */
+        public JiraConnection.Stats getConnectionStats()
+        {
+            return JiraConnection.getStats();
+        }
+
+        /**
+         * Replaces the connection to Jira. The old one is closed after a delay, so that the requests already started
+         * can finish.
+         *
+         * @param newConnection the new connection, can be null
+         */
+        private void setConnection(JiraConnection newConnection)
+        {
+            JiraConnection oldConnection = connection;
+            connection = newConnection;
+            if (oldConnection != null)
+            {
+                oldConnection.closeLater();
+            }
         }
 
         /**
@@ -486,14 +569,115 @@ public class JiraTestDataPublisher extends TestDataPublisher
                     : DEFAULT_DESCRIPTION;
         }
 
+        /**
+         * Getter for the compaction flag, see {@link MappingCompactionWork}
+         *
+         * @return true if stale test to issue links should be pruned periodically
+         */
+        public boolean isCompactionEnabled()
+        {
+            return compactionEnabled;
+        }
+
+        /**
+         * Getter for the compaction dry run flag
+         *
+         * @return true if the compaction should only report the links it would remove
+         */
+        public boolean isCompactionDryRun()
+        {
+            return compactionDryRun;
+        }
+
+        /**
+         * Getter for the closed issues policy
+         *
+         * @return true if links to closed issues should be pruned
+         */
+        public boolean isPruneClosedIssues()
+        {
+            return pruneClosedIssues;
+        }
+
+        /**
+         * Getter for the missing tests policy
+         *
+         * @return true if links of tests missing from the recent builds should be pruned
+         */
+        public boolean isPruneMissingTests()
+        {
+            return pruneMissingTests;
+        }
+
+        /**
+         * Getter for the number of recent builds in which a test must be missing for its link to be pruned
+         *
+         * @return the number of builds
+         */
+        public int getCompactionBuildsToScan()
+        {
+            return compactionBuildsToScan > 0 ? compactionBuildsToScan : DEFAULT_COMPACTION_BUILDS_TO_SCAN;
+        }
+
+        /**
+         * Getter for the prefetch flag, see {@link MetadataPrefetcher}
+         *
+         * @return true if the Jira metadata should be fetched in the background after Jenkins starts
+         */
+        public boolean isPrefetchMetadata()
+        {
+            return prefetchMetadata;
+        }
+
+        /**
+         * Getter for the interval at which the statuses are fetched again
+         *
+         * @return the interval in minutes
+         */
+        public int getStatusRefreshMinutes()
+        {
+            return statusRefreshMinutes > 0 ? statusRefreshMinutes : DEFAULT_STATUS_REFRESH_MINUTES;
+        }
+
+        /**
+         * Getter for the secret of the Jira webhook, see {@link JiraWebhook}
+         *
+         * @return the secret, the webhook is disabled if it's empty
+         */
+        public Secret getWebhookSecret()
+        {
+            return webhookSecret;
+        }
+
+        /**
+         * Getter for the flag telling if the webhook unlinks the tests from the deleted issues
+         *
+         * @return true if the tests are unlinked
+         */
+        public boolean isWebhookUnlinkDeleted()
+        {
+            return webhookUnlinkDeleted;
+        }
+
         /**
          * Getter for the statuses map, contains information about status category of each status
          *
-         * @return the the Map of statuses
+         * @return the the Map of statuses, null if the statuses were not fetched yet
          */
         public Map<String, FullStatus> getStatusesMap()
         {
-            return statuses;
+            StatusSnapshot snapshot = statusSnapshot.get();
+            return snapshot != null ? snapshot.getByName() : null;
+        }
+
+        /**
+         * Getter for the last fetched statuses, never blocks
+         *
+         * @return the statuses, null if the statuses were not fetched yet
+         */
+        public StatusSnapshot getStatusSnapshot()
+        {
+            return statusSnapshot.get();
         }
 
         /**
@@ -510,6 +694,74 @@ public class JiraTestDataPublisher extends TestDataPublisher
             return metadataCache.getCacheEntry(projectKey, issueType);
         }
 
+        /**
+         * Getter for the cached project information
+         *
+         * @param projectKey projectKey
+         *
+         * @return the project information, or null if the project does not exist
+         */
+        public ProjectCache.ProjectInfo getProjectInfo(String projectKey)
+        {
+            return projectCache.getProjectInfo(projectKey);
+        }
+
+        /**
+         * Getter for a cached Jira user
+         *
+         * @param username the user name
+         *
+         * @return the user, or null if the user does not exist
+         */
+        public com.atlassian.jira.rest.client.api.domain.User getUser(String username)
+        {
+            return userCache.getUser(username);
+        }
+
+        /**
+         * Getter for the cached status of an issue
+         *
+         * @param issueKey the issue key
+         *
+         * @return the status, or null if the issue does not exist
+         */
+        public IssueStatusCache.IssueStatus getIssueStatus(String issueKey)
+        {
+            return issueStatusCache.getIssueStatus(issueKey);
+        }
+
+        /**
+         * Getter for the status of an issue, only if it is already cached
+         *
+         * @param issueKey the issue key
+         *
+         * @return the status, or null if it is not cached
+         */
+        public IssueStatusCache.IssueStatus getCachedIssueStatus(String issueKey)
+        {
+            return issueStatusCache.getCachedIssueStatus(issueKey);
+        }
+
+        /**
+         * Getter for the issue status cache
+         *
+         * @return the issue status cache
+         */
+        public IssueStatusCache getIssueStatusCache()
+        {
+            return issueStatusCache;
+        }
+
+        /**
+         * Getter for the statistics of the metadata cache
+         *
+         * @return the statistics
+         */
+        public ExpiringCache.Stats getMetadataCacheStats()
+        {
+            return metadataCache.getStats();
+        }
+
         /**
          * Method for resolving transient objects after deserialization. Called by the JVM. See Java documentation for
          * more details.
@@ -520,14 +772,8 @@ public class JiraTestDataPublisher extends TestDataPublisher
         {
             if (jiraUri != null && username != null && password != null)
             {
-                AsynchronousJiraRestClientFactory factory = new AsynchronousJiraRestClientFactory();
-                restClient = factory.createWithBasicHttpAuthentication(jiraUri,
-                        username, password.getPlainText());
-                restClientExtension = new JiraRestClientExtension(jiraUri,
-                        new AsynchronousHttpClientFactory().createClient(
-                                jiraUri, new BasicHttpAuthenticationHandler(
-                                        username, password.getPlainText())));
-                tryCreatingStatusToCategoryMap();
+                setConnection(JiraConnection.open(jiraUri, username, password.getPlainText()));
+                refreshStatusesAsync();
             }
             return this;
         }
@@ -577,35 +823,106 @@ public class JiraTestDataPublisher extends TestDataPublisher
             username = json.getString("username");
             password = Secret.fromString(json.getString("password"));
 
-            AsynchronousJiraRestClientFactory factory = new AsynchronousJiraRestClientFactory();
-            restClient = factory.createWithBasicHttpAuthentication(jiraUri,
-                    username, password.getPlainText());
-            restClientExtension = new JiraRestClientExtension(jiraUri,
-                    new AsynchronousHttpClientFactory().createClient(jiraUri,
-                            new BasicHttpAuthenticationHandler(username,
-                                    password.getPlainText())));
+            setConnection(JiraConnection.open(jiraUri, username, password.getPlainText()));
+            metadataCache.clear();
+            projectCache.clear();
+            userCache.clear();
+            issueStatusCache.clear();
             defaultSummary = json.getString("summary");
             defaultDescription = json.getString("description");
-            tryCreatingStatusToCategoryMap();
+            compactionEnabled = json.optBoolean("compactionEnabled");
+            compactionDryRun = json.optBoolean("compactionDryRun");
+            pruneClosedIssues = json.optBoolean("pruneClosedIssues");
+            pruneMissingTests = json.optBoolean("pruneMissingTests");
+            prefetchMetadata = json.optBoolean("prefetchMetadata");
+            webhookSecret = Secret.fromString(json.optString("webhookSecret"));
+            webhookUnlinkDeleted = json.optBoolean("webhookUnlinkDeleted");
+            try
+            {
+                compactionBuildsToScan = Integer.parseInt(json.optString("compactionBuildsToScan"));
+            }
+            catch (NumberFormatException e)
+            {
+                compactionBuildsToScan = DEFAULT_COMPACTION_BUILDS_TO_SCAN;
+            }
+            try
+            {
+                statusRefreshMinutes = Integer.parseInt(json.optString("statusRefreshMinutes"));
+            }
+            catch (NumberFormatException e)
+            {
+                statusRefreshMinutes = DEFAULT_STATUS_REFRESH_MINUTES;
+            }
+            refreshStatusesAsync();
             save();
             return super.configure(req, json);
         }
 
         /**
-         * method for creating the status category map, if the Jira server knows about categories
+         * Creates the status category map, if it could not be created when the configuration was loaded
          */
-        private void tryCreatingStatusToCategoryMap()
+        void prefetchStatuses()
+        {
+            if (statusSnapshot.get() == null)
+            {
+                refreshStatuses();
+            }
+        }
+
+        /**
+         * Fetches the statuses in the background, on the {@link JiraExecutor}, so that neither the configuration nor
+         * the Jenkins Timer threads wait for Jira
+         */
+        private void refreshStatusesAsync()
         {
             try
             {
-                Iterable<FullStatus> currStatuses = restClientExtension
-                        .getStatuses().claim();
-                Map<String, FullStatus> statusHashMap = new HashMap<>();
-                for (FullStatus status : currStatuses)
+                JiraExecutor.get().submit(new Runnable()
                 {
-                    statusHashMap.put(status.getName(), status);
-                }
-                this.statuses = statusHashMap;
+                    @Override
+                    public void run()
+                    {
+                        refreshStatuses();
+                    }
+                });
+            }
+            catch (RejectedExecutionException e)
+            {
+                //tried again by the next run of StatusRefreshWork
+                JiraUtils.logWarning("Could not schedule the refresh of the statuses, too many pending Jira tasks");
+            }
+        }
+
+        /**
+         * Fetches the statuses again in the background if the refresh interval passed, called periodically by
+         * {@link StatusRefreshWork}
+         */
+        void refreshStatusesIfStale()
+        {
+            long interval = statusSnapshot.get() != null
+                    ? TimeUnit.MINUTES.toMillis(getStatusRefreshMinutes()) : STATUS_RETRY_INTERVAL;
+            if (System.currentTimeMillis() - lastStatusRefresh >= interval)
+            {
+                refreshStatusesAsync();
+            }
+        }
+
+        /**
+         * method for creating the status category map, if the Jira server knows about categories. The new map
+         * replaces the old one only if it was fetched successfully.
+         */
+        void refreshStatuses()
+        {
+            JiraRestClientExtension extension = getRestClientExtension();
+            if (extension == null || !refreshingStatuses.compareAndSet(false, true))
+            {
+                return;
+            }
+            try
+            {
+                lastStatusRefresh = System.currentTimeMillis();
+                Iterable<FullStatus> currStatuses = extension.getStatuses().claim();
+                statusSnapshot.set(new StatusSnapshot(currStatuses, System.currentTimeMillis()));
             }
             catch (RestClientException e)
             {
@@ -615,6 +932,14 @@ public class JiraTestDataPublisher extends TestDataPublisher
                 JiraUtils.logWarning(
                         "Jira server does not support status categories", e);
             }
+            catch (RuntimeException e)
+            {
+                JiraUtils.logWarning("Could not fetch the statuses", e);
+            }
+            finally
+            {
+                refreshingStatuses.set(false);
+            }
         }
 
         /**
@@ -652,6 +977,7 @@ public class JiraTestDataPublisher extends TestDataPublisher
         {
 
             String serverName;
+            JiraConnection localConnection = null;
             try
             {
                 new URL(jiraUrl);
@@ -661,11 +987,8 @@ public class JiraTestDataPublisher extends TestDataPublisher
                 // so we try to query some server
                 // metadata, to see if the configured user is authorized on this
                 // server
-                AsynchronousJiraRestClientFactory factory = new AsynchronousJiraRestClientFactory();
-                JiraRestClient localRestClient = factory
-                        .createWithBasicHttpAuthentication(uri, username,
-                                pass.getPlainText());
-                MetadataRestClient client = localRestClient.getMetadataClient();
+                localConnection = JiraConnection.open(uri, username, pass.getPlainText());
+                MetadataRestClient client = localConnection.getRestClient().getMetadataClient();
                 Promise<ServerInfo> serverInfoPromise = client.getServerInfo();
                 ServerInfo serverInfo = serverInfoPromise.claim();
                 serverName = serverInfo.getServerTitle();
@@ -688,6 +1011,13 @@ public class JiraTestDataPublisher extends TestDataPublisher
                 JiraUtils.logError("ERROR: Unknown error", e);
                 return FormValidation.error("ERROR Unknown: " + e.getMessage());
             }
+            finally
+            {
+                if (localConnection != null)
+                {
+                    localConnection.close();
+                }
+            }
 
             return FormValidation.ok(serverName);
         }
@@ -712,20 +1042,9 @@ public class JiraTestDataPublisher extends TestDataPublisher
                 return FormValidation.error("No jira site configured");
             }
 
-            ProjectRestClient projectClient = getRestClient()
-                    .getProjectClient();
-            Project project;
-            try
-            {
-                project = projectClient.getProject(projectKey).claim();
-                if (project == null)
-                {
-                    return FormValidation.error("Invalid Project Key");
-                }
-            }
-            catch (RestClientException e)
+            ProjectCache.ProjectInfo project = projectCache.getProjectInfo(projectKey);
+            if (project == null)
             {
-                JiraUtils.logWarning("Invalid Project Key", e);
                 return FormValidation.error("Invalid Project Key");
             }
             return FormValidation.ok(project.getName());
@@ -747,27 +1066,10 @@ public class JiraTestDataPublisher extends TestDataPublisher
                 return m;
             }
 
-            ProjectRestClient projectRestClient = getRestClient()
-                    .getProjectClient();
-            try
-            {
-                Promise<Project> projectPromise = projectRestClient
-                        .getProject(projectKey);
-                Project project = projectPromise.claim();
-                OptionalIterable<IssueType> issueTypes = project
-                        .getIssueTypes();
-
-                for (IssueType issueType : issueTypes)
-                {
-                    m.add(new ListBoxModel.Option(issueType.getName(),
-                            issueType.getId().toString(),
-                            issueType.getName().equals("Bug")));
-                }
-            }
-            catch (Exception e)
+            ProjectCache.ProjectInfo project = projectCache.getProjectInfo(projectKey);
+            if (project != null)
             {
-                JiraUtils.logError("ERROR: Unknown error", e);
-                return m;
+                m = project.getIssueTypes();
             }
             return m;
         }
@@ -842,7 +1144,7 @@ public class JiraTestDataPublisher extends TestDataPublisher
             // if the issue was created successfully, try to delete it
             try
             {
-                restClientExtension.deteleIssue(newCreatedIssue.getKey())
+                getRestClientExtension().deteleIssue(newCreatedIssue.getKey())
                         .claim();
             }
             catch (RestClientException e)
@@ -21,7 +21,6 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.jenkinsci.plugins.JiraTestResultReporter.config.AbstractFields;
 
 import com.atlassian.jira.rest.client.api.IssueRestClient;
 import com.atlassian.jira.rest.client.api.RestClientException;
@@ -29,7 +28,6 @@ import com.atlassian.jira.rest.client.api.domain.BasicIssue;
 import com.atlassian.jira.rest.client.api.domain.SearchResult;
 import com.atlassian.jira.rest.client.api.domain.input.FieldInput;
 import com.atlassian.jira.rest.client.api.domain.input.IssueInput;
-import com.atlassian.jira.rest.client.api.domain.input.IssueInputBuilder;
 import com.atlassian.jira.rest.client.api.domain.util.ErrorCollection;
 import com.atlassian.util.concurrent.Promise;
 
@@ -43,6 +41,8 @@ import jenkins.model.Jenkins;
  */
 public class JiraUtils {
     private static final Logger LOGGER = Logger.getLogger("JiraIssuePlugin.log");
+    //the template of the jobs without a saved configuration, compiled the first time it is needed
+    private static volatile IssueTemplate defaultIssueTemplate;
 
     /**
      * Constructs the URL for an issue, given the server url and the issue key
@@ -104,17 +104,37 @@ public class JiraUtils {
     }
 
     public static IssueInput createIssueInput(AbstractProject project, TestResult test, EnvVars envVars) {
-        final IssueInputBuilder newIssueBuilder = new IssueInputBuilder(
-                JobConfigMapping.getInstance().getProjectKey(project),
-                JobConfigMapping.getInstance().getIssueType(project));
-        //first use the templates and then override them if other configs exist
-        for(AbstractFields f : JiraTestDataPublisher.JiraTestDataPublisherDescriptor.TEMPLATES) {
-            newIssueBuilder.setFieldInput(f.getFieldInput(test, envVars));
-        }
-        for (AbstractFields f : JobConfigMapping.getInstance().getConfig(project)) {
-            newIssueBuilder.setFieldInput(f.getFieldInput(test, envVars));
+        return createIssueInput(project, new ExpansionContext(test, envVars));
+    }
+
+    /**
+     * Creates the IssueInput for a test, the rendered fields are remembered in the context so that they can be reused
+     * when looking for duplicates
+     * @param project the project
+     * @param context the expansion context of the test
+     * @return the IssueInput
+     */
+    public static IssueInput createIssueInput(AbstractProject project, ExpansionContext context) {
+        return getIssueTemplate(project).createIssueInput(context);
+    }
+
+    /**
+     * Getter for the compiled issue template of a project
+     * @param project the project
+     * @return the issue template
+     */
+    public static IssueTemplate getIssueTemplate(AbstractProject project) {
+        IssueTemplate template = JobConfigMapping.getInstance().getIssueTemplate(project);
+        if(template == null) {
+            //no configuration saved for this job, only the templates apply, the same for all such jobs
+            template = defaultIssueTemplate;
+            if(template == null) {
+                template = IssueTemplate.compile(null, null,
+                        JiraTestDataPublisher.JiraTestDataPublisherDescriptor.TEMPLATES, null);
+                defaultIssueTemplate = template;
+            }
         }
-        return newIssueBuilder.build();
+        return template;
     }
 
     public static String createIssue(IssueInput issueInput) {
@@ -132,11 +152,27 @@ public class JiraUtils {
      * @return a SearchResult. Empty SearchResult means nothing was found.
      */
     public static SearchResult findIssues(AbstractProject project, TestResult test, EnvVars envVars, IssueInput issueInput)
+    {
+        return findIssues(project, new ExpansionContext(test, envVars), issueInput);
+    }
+
+    /**
+     * To prevent the creation of duplicates lets see if we can find a pre-existing issue, reusing the fields
+     * already rendered in the context of the test.
+     * @param project the project
+     * @param context the expansion context of the test
+     * @param issueInput the issue that would be created
+     * @return a SearchResult. Empty SearchResult means nothing was found.
+     */
+    public static SearchResult findIssues(AbstractProject project, ExpansionContext context, IssueInput issueInput)
     {
     	SearchResult searchResult = null;
         String projectKey = JobConfigMapping.getInstance().getProjectKey(project);
-        FieldInput fi = JiraTestDataPublisher.JiraTestDataPublisherDescriptor.TEMPLATES.get(0).getFieldInput(test, envVars);
-        String jql = String.format("status != \"closed\" and project = \"%s\" and text ~ \"%s\"", projectKey, escapeJQL(issueInput.getField(fi.getId()).getValue().toString()));
+        FieldInput fi = context.getFieldInput(JiraTestDataPublisher.JiraTestDataPublisherDescriptor.TEMPLATES.get(0));
+        String jql = new JqlBuilder()
+                .append("status != \"closed\" and project = ").string(projectKey)
+                .append(" and text ~ ").text(issueInput.getField(fi.getId()).getValue().toString())
+                .build();
         
         final Set<String > fields = new HashSet<>();
         
@@ -170,7 +206,10 @@ public class JiraUtils {
     public static int bugsPerDay(AbstractProject project, TestResult test,String username)
     {
         String projectKey = JobConfigMapping.getInstance().getProjectKey(project);
-        String jql = String.format("project = \"%s\" and Created >= startOfDay() and creator= \"%s\"",projectKey,username);
+        String jql = new JqlBuilder()
+                .append("project = ").string(projectKey)
+                .append(" and Created >= startOfDay() and creator= ").string(username)
+                .build();
         log(jql);
         
         final Set<String > fields = new HashSet<>();
@@ -190,7 +229,7 @@ public class JiraUtils {
      * Escape the JQL query of special characters.
      *
      * Currently:
-     *  + - & | ! ( ) { } [ ] ^ ~ * ? \ / :
+     *  + - & | ! ( ) { } [ ] ^ ~ * ? \ / : "
      *
      * Reference:
      *  https://confluence.atlassian.com/jiracoreserver073/search-syntax-for-text-fields-861257223.html
@@ -200,25 +239,6 @@ public class JiraUtils {
      */
     static String escapeJQL(String jql)
     {
-        return jql.replaceAll("'","\\'")
-                .replaceAll("\"","\\\"")
-                .replaceAll("\\+", "\\\\+")
-                .replaceAll("-", "\\\\-")
-                .replaceAll("&", "\\\\&")
-                .replaceAll("\\|", "\\\\|")
-                .replaceAll("!", "\\\\!")
-                .replaceAll("\\(", "\\\\(")
-                .replaceAll("\\)", "\\\\)")
-                .replaceAll("\\{", "\\\\{")
-                .replaceAll("}", "\\\\}")
-                .replaceAll("\\[", "\\\\[")
-                .replaceAll("]", "\\\\]")
-                .replaceAll("\\^", "\\\\^")
-                .replaceAll("~", "\\\\~")
-                .replaceAll("\\*", "\\\\*")
-                .replaceAll("\\?", "\\\\\\?")
-                .replaceAll("\\\\","\\\\\\\\")
-                .replaceAll("\\/", "\\\\/")
-                .replaceAll(":", "\\\\\\\\:");
+        return JqlBuilder.escapeText(jql);
     }
 }
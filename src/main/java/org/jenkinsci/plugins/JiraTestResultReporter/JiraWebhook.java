@@ -0,0 +1,150 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.google.gson.JsonParseException;
+import hudson.Extension;
+import hudson.model.UnprotectedRootAction;
+import hudson.security.csrf.CrumbExclusion;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Receiver for the Jira webhooks, so that the status of the linked issues is updated as soon as it changes, instead
+ * of when the cache expires. The webhook must be registered in Jira for the "issue updated" and "issue deleted"
+ * events, with the URL {@code <jenkins>/jira-test-result-reporter-webhook/?secret=<secret>}. Jira does not
+ * authenticate to Jenkins, so the requests are checked against the secret from the global configuration, and the
+ * webhook is disabled when there is no secret.
+ */
+@Extension
+public class JiraWebhook implements UnprotectedRootAction {
+    public static final String URL_NAME = "jira-test-result-reporter-webhook";
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * Receives a webhook
+     * @param req request, with the "secret" parameter
+     * @param rsp response
+     * @throws IOException error
+     */
+    @RequirePOST
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        JiraTestDataPublisher.JiraTestDataPublisherDescriptor jiraDescriptor = JiraUtils.getJiraDescriptor();
+        String secret = jiraDescriptor.getWebhookSecret() != null ? jiraDescriptor.getWebhookSecret().getPlainText() : "";
+        if(secret.isEmpty()) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND, "The webhook is not enabled");
+            return;
+        }
+        if(!isValidSecret(secret, req.getParameter("secret"))) {
+            rsp.sendError(HttpServletResponse.SC_FORBIDDEN, "Invalid secret");
+            return;
+        }
+
+        JiraWebhookEvent event;
+        try {
+            event = JiraWebhookEvent.parse(req.getReader());
+        } catch (JsonParseException | IllegalStateException e) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid payload: " + e.getMessage());
+            return;
+        }
+
+        handle(event, jiraDescriptor.getIssueStatusCache(), jiraDescriptor.isWebhookUnlinkDeleted());
+        rsp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+
+    /**
+     * Applies an event to the issue status cache, and to the test to issue maps for deleted issues
+     * @param event the event
+     * @param issueStatusCache the cache
+     * @param unlinkDeleted true to unlink the tests from the deleted issues
+     */
+    static void handle(JiraWebhookEvent event, IssueStatusCache issueStatusCache, boolean unlinkDeleted) {
+        switch (event.getType()) {
+            case ISSUE_UPDATED:
+                if(event.getStatus() != null) {
+                    issueStatusCache.update(event.getIssueKey(), new IssueStatusCache.IssueStatus(event.getStatus(),
+                            event.getSummary(), event.getStatusColor() != null ? event.getStatusColor()
+                                    : IssueStatusCache.IssueStatus.getColorName(event.getStatus())));
+                } else {
+                    //the status is fetched again the next time it's needed
+                    issueStatusCache.invalidate(event.getIssueKey());
+                }
+                break;
+            case ISSUE_DELETED:
+                issueStatusCache.invalidate(event.getIssueKey());
+                if(unlinkDeleted) {
+                    int removed = TestToIssueMapping.getInstance().removeTestToIssueMappings(event.getIssueKey());
+                    JiraUtils.log("Unlinked " + removed + " tests from the deleted issue " + event.getIssueKey());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Compares the secrets in constant time, so that the secret cannot be guessed from the response times
+     * @param expected the configured secret
+     * @param actual the secret from the request, can be null
+     * @return true if they are the same
+     */
+    static boolean isValidSecret(String expected, String actual) {
+        if(actual == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), actual.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Jira cannot send a crumb, the requests are authenticated by the secret
+     */
+    @Extension
+    public static class JiraWebhookCrumbExclusion extends CrumbExclusion {
+        @Override
+        public boolean process(HttpServletRequest req, HttpServletResponse rsp, FilterChain chain)
+                throws IOException, ServletException {
+            String pathInfo = req.getPathInfo();
+            if(pathInfo != null && (pathInfo.equals("/" + URL_NAME) || pathInfo.startsWith("/" + URL_NAME + "/"))) {
+                chain.doFilter(req, rsp);
+                return true;
+            }
+            return false;
+        }
+    }
+}
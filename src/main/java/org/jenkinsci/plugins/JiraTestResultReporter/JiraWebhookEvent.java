@@ -0,0 +1,117 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.Reader;
+
+/**
+ * The parts of a Jira webhook payload used by the plugin: what happened, to which issue, and the new status and
+ * summary of the issue. Reference:
+ *  https://developer.atlassian.com/server/jira/platform/webhooks/
+ */
+public class JiraWebhookEvent {
+    public enum Type {
+        ISSUE_UPDATED,
+        ISSUE_DELETED,
+        OTHER
+    }
+
+    private final Type type;
+    private final String issueKey;
+    private final String status;
+    private final String summary;
+    private final String statusColor;
+
+    JiraWebhookEvent(Type type, String issueKey, String status, String summary, String statusColor) {
+        this.type = type;
+        this.issueKey = issueKey;
+        this.status = status;
+        this.summary = summary;
+        this.statusColor = statusColor;
+    }
+
+    /**
+     * Parses a webhook payload
+     * @param in the body of the request
+     * @return the event
+     * @throws JsonParseException if the payload is not a json object, or it has no issue key
+     */
+    public static JiraWebhookEvent parse(Reader in) throws JsonParseException {
+        JsonElement root = new JsonParser().parse(in);
+        if(!root.isJsonObject()) {
+            throw new JsonParseException("The payload is not a json object");
+        }
+
+        JsonObject payload = root.getAsJsonObject();
+        String webhookEvent = getString(payload, "webhookEvent");
+        Type type;
+        if("jira:issue_created".equals(webhookEvent) || "jira:issue_updated".equals(webhookEvent)) {
+            type = Type.ISSUE_UPDATED;
+        } else if("jira:issue_deleted".equals(webhookEvent)) {
+            type = Type.ISSUE_DELETED;
+        } else {
+            type = Type.OTHER;
+        }
+
+        JsonObject issue = getObject(payload, "issue");
+        String issueKey = getString(issue, "key");
+        if(type != Type.OTHER && issueKey == null) {
+            throw new JsonParseException("The payload has no issue key");
+        }
+
+        JsonObject fields = getObject(issue, "fields");
+        JsonObject status = getObject(fields, "status");
+        return new JiraWebhookEvent(type, issueKey, getString(status, "name"), getString(fields, "summary"),
+                getString(getObject(status, "statusCategory"), "colorName"));
+    }
+
+    private static JsonObject getObject(JsonObject object, String name) {
+        if(object == null || !object.has(name) || !object.get(name).isJsonObject()) {
+            return null;
+        }
+        return object.getAsJsonObject(name);
+    }
+
+    private static String getString(JsonObject object, String name) {
+        if(object == null || !object.has(name) || !object.get(name).isJsonPrimitive()) {
+            return null;
+        }
+        return object.get(name).getAsString();
+    }
+
+    public Type getType() { return type; }
+
+    public String getIssueKey() { return issueKey; }
+
+    /**
+     * Getter for the status name
+     * @return the status name, null if the payload doesn't have it
+     */
+    public String getStatus() { return status; }
+
+    public String getSummary() { return summary; }
+
+    /**
+     * Getter for the colour of the status category
+     * @return the colour name, null if the payload doesn't have it
+     */
+    public String getStatusColor() { return statusColor; }
+}
@@ -21,6 +21,7 @@ import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
+import hudson.matrix.MatrixConfiguration;
 import hudson.model.AbstractProject;
 import jenkins.model.Jenkins;
 import org.jenkinsci.plugins.JiraTestResultReporter.config.AbstractFields;
@@ -28,8 +29,11 @@ import org.jenkinsci.plugins.JiraTestResultReporter.config.FieldConfigsJsonAdapt
 
 import java.io.*;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
@@ -50,6 +54,7 @@ public class JobConfigMapping {
         private final boolean preventDuplicateIssue;
         private final String maxNoOfBugs;
         private transient Pattern issueKeyPattern;
+        private transient volatile IssueTemplate issueTemplate;
 
         /**
          * Constructor
@@ -107,6 +112,21 @@ public class JobConfigMapping {
          */
         public Pattern getIssueKeyPattern() { return issueKeyPattern; }
 
+        /**
+         * Getter for the issue template, compiled the first time it is needed. A new entry is created every time the
+         * job configuration is saved, so the template never gets stale.
+         * @return the issue template
+         */
+        public IssueTemplate getIssueTemplate() {
+            IssueTemplate template = issueTemplate;
+            if(template == null) {
+                template = IssueTemplate.compile(projectKey, issueType,
+                        JiraTestDataPublisher.JiraTestDataPublisherDescriptor.TEMPLATES, configs);
+                issueTemplate = template;
+            }
+            return template;
+        }
+
         /**
          * Method for resolving transient objects after deserialization. Called by the JVM.
          * See Java documentation for more details.
@@ -133,14 +153,24 @@ public class JobConfigMapping {
      * Constructor. Will deserialize the existing map, or will create an empty new one
      */
     private JobConfigMapping(){
-        configMap = new HashMap<>();
+        configMap = new ConcurrentHashMap<>();
 
-        for(AbstractProject project : Jenkins.getInstance().getItems(AbstractProject.class)) {
-            JobConfigEntry entry = load(project);
-            if (entry != null) {
-                configMap.put(project.getFullName(), entry);
-            }
-        }
+        //jobs in folders included. This runs during the class initialization, so the loading threads must not
+        //touch the static fields of this class (getInstance() included), or they will wait for it forever
+        ParallelLoader.forEach("JiraTestResultReporter config loader",
+                Jenkins.getInstance().getAllItems(AbstractProject.class), ParallelLoader.DEFAULT_THREADS,
+                new ParallelLoader.Task<AbstractProject>() {
+                    @Override
+                    public void run(AbstractProject project) {
+                        if (project instanceof MatrixConfiguration) {
+                            return; //the configs are saved only for the parent matrix project
+                        }
+                        JobConfigEntry entry = load(project);
+                        if (entry != null) {
+                            configMap.put(project.getFullName(), entry);
+                        }
+                    }
+                });
     }
 
     /**
@@ -318,6 +348,36 @@ public class JobConfigMapping {
         return entry != null ? entry.getMaxNoOfBugs() : null;
     }
 
+    /**
+     * Getter for the compiled issue template of the last configuration
+     * @param project project
+     * @return issue template
+     */
+    public IssueTemplate getIssueTemplate(AbstractProject project) {
+        JobConfigEntry entry = getJobConfigEntry(project);
+        return entry != null ? entry.getIssueTemplate() : null;
+    }
+
+    /**
+     * Getter for all the project keys and issue types used in the job configurations
+     * @return map from project key to the issue types used with it
+     */
+    public Map<String, Set<Long>> getProjectKeysAndIssueTypes() {
+        Map<String, Set<Long>> projectKeysAndIssueTypes = new HashMap<>();
+        for(JobConfigEntry entry : configMap.values()) {
+            if(entry.getProjectKey() == null || entry.getIssueType() == null) {
+                continue;
+            }
+            Set<Long> issueTypes = projectKeysAndIssueTypes.get(entry.getProjectKey());
+            if(issueTypes == null) {
+                issueTypes = new HashSet<>();
+                projectKeysAndIssueTypes.put(entry.getProjectKey(), issueTypes);
+            }
+            issueTypes.add(entry.getIssueType());
+        }
+        return projectKeysAndIssueTypes;
+    }
+
     /**
      * Getter for the issue key pattern, used to validate user input
      * @param project project
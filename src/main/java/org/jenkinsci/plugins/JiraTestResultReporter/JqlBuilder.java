@@ -0,0 +1,147 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import java.util.Collection;
+
+/**
+ * Builder for JQL queries. The clauses are written by the plugin, while the values coming from the user, the tests
+ * or Jira are added as typed parameters, which are quoted and escaped according to where they are used.
+ *
+ * Reference:
+ *  https://confluence.atlassian.com/jiracoreserver073/search-syntax-for-text-fields-861257223.html
+ */
+public class JqlBuilder {
+    /**
+     * Escapes for the values of the text searches (~), indexed by character. The characters reserved by the text
+     * search are escaped with a backslash, which is itself escaped, because the value is also a JQL string.
+     */
+    private static final String[] TEXT_ESCAPES = new String[128];
+    /**
+     * Escapes for the JQL strings, indexed by character
+     */
+    private static final String[] STRING_ESCAPES = new String[128];
+
+    static {
+        for(char c : "+-&|!(){}[]^~*?:/".toCharArray()) {
+            TEXT_ESCAPES[c] = "\\\\" + c;
+        }
+        TEXT_ESCAPES['\\'] = "\\\\";
+        TEXT_ESCAPES['"'] = "\\\"";
+
+        STRING_ESCAPES['\\'] = "\\\\";
+        STRING_ESCAPES['"'] = "\\\"";
+    }
+
+    private final StringBuilder jql = new StringBuilder();
+
+    /**
+     * Appends a part of the query, as it is. Must not contain values that are not controlled by the plugin.
+     * @param clause the part of the query
+     * @return this builder
+     */
+    public JqlBuilder append(String clause) {
+        jql.append(clause);
+        return this;
+    }
+
+    /**
+     * Appends a quoted string value, for example a project key or a user name
+     * @param value the value
+     * @return this builder
+     */
+    public JqlBuilder string(String value) {
+        jql.append('"');
+        escape(value, 0, STRING_ESCAPES, jql);
+        jql.append('"');
+        return this;
+    }
+
+    /**
+     * Appends a quoted list of string values, for the in operator
+     * @param values the values
+     * @return this builder
+     */
+    public JqlBuilder strings(Collection<String> values) {
+        jql.append('(');
+        boolean first = true;
+        for(String value : values) {
+            if(!first) {
+                jql.append(", ");
+            }
+            string(value);
+            first = false;
+        }
+        jql.append(')');
+        return this;
+    }
+
+    /**
+     * Appends a quoted value for a text search, with the reserved characters escaped so that they are searched for
+     * literally
+     * @param value the value
+     * @return this builder
+     */
+    public JqlBuilder text(String value) {
+        jql.append('"');
+        escape(value, 0, TEXT_ESCAPES, jql);
+        jql.append('"');
+        return this;
+    }
+
+    /**
+     * Getter for the query
+     * @return the query
+     */
+    public String build() {
+        return jql.toString();
+    }
+
+    @Override
+    public String toString() {
+        return build();
+    }
+
+    /**
+     * Escapes a value for a text search, without quoting it
+     * @param text the value
+     * @return the escaped value
+     */
+    public static String escapeText(String text) {
+        for(int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if(c < TEXT_ESCAPES.length && TEXT_ESCAPES[c] != null) {
+                StringBuilder escaped = new StringBuilder(text.length() + 16);
+                escaped.append(text, 0, i);
+                escape(text, i, TEXT_ESCAPES, escaped);
+                return escaped.toString();
+            }
+        }
+        return text;
+    }
+
+    private static void escape(String value, int from, String[] escapes, StringBuilder out) {
+        for(int i = from; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String escape = c < escapes.length ? escapes[c] : null;
+            if(escape != null) {
+                out.append(escape);
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded, in-memory log of the changes made to the test to issue map of a single job. Every change gets a sequence
+ * number, so clients mirroring the map can ask only for what changed since the last sequence number they have seen.
+ * Only the last {@code capacity} changes are kept, clients that are further behind need to fetch the whole map.
+ * The log is not persisted, the sequence numbers start from 0 after every restart.
+ */
+public class MappingChangeLog {
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    /**
+     * A single change in the map. A null issue key means the test was unlinked.
+     */
+    public static class Change {
+        private final long sequence;
+        private final String testId;
+        private final String issueKey;
+
+        public Change(long sequence, String testId, String issueKey) {
+            this.sequence = sequence;
+            this.testId = testId;
+            this.issueKey = issueKey;
+        }
+
+        public long getSequence() { return sequence; }
+
+        public String getTestId() { return testId; }
+
+        public String getIssueKey() { return issueKey; }
+
+        public boolean isRemoval() { return issueKey == null; }
+    }
+
+    private final int capacity;
+    private final ArrayDeque<Change> changes;
+    private long sequence = 0;
+
+    /**
+     * Constructor
+     * @param capacity maximum number of changes kept in memory
+     */
+    public MappingChangeLog(int capacity) {
+        this.capacity = capacity;
+        this.changes = new ArrayDeque<>();
+    }
+
+    public MappingChangeLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Records a change, evicting the oldest one if the log is full
+     * @param testId the test id
+     * @param issueKey the new issue key, or null if the test was unlinked
+     * @return the sequence number of the change
+     */
+    public synchronized long record(String testId, String issueKey) {
+        sequence++;
+        if (capacity <= 0) {
+            return sequence;
+        }
+        if (changes.size() == capacity) {
+            changes.pollFirst();
+        }
+        changes.addLast(new Change(sequence, testId, issueKey));
+        return sequence;
+    }
+
+    /**
+     * Getter for the sequence number of the last change
+     * @return the last sequence number, 0 if nothing changed since startup
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Getter for the changes made after a given sequence number
+     * @param since the last sequence number known by the client
+     * @return the changes in the order they were made, or null if the log cannot answer (the client is too far behind
+     * or knows about sequence numbers that were never given, e.g. from before a restart)
+     */
+    public synchronized List<Change> getChangesSince(long since) {
+        if (since > sequence || since < 0) {
+            return null;
+        }
+        long oldestKnown = changes.isEmpty() ? sequence + 1 : changes.peekFirst().getSequence();
+        if (since + 1 < oldestKnown && since != sequence) {
+            return null;
+        }
+        List<Change> result = new ArrayList<>();
+        for (Change change : changes) {
+            if (change.getSequence() > since) {
+                result.add(change);
+            }
+        }
+        return result;
+    }
+}
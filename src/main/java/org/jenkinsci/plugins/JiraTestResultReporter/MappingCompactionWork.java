@@ -0,0 +1,291 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.atlassian.jira.rest.client.api.JiraRestClient;
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.atlassian.jira.rest.client.api.domain.SearchResult;
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.junit.TestResultAction;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.IssueSummary;
+import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.JiraRestClientExtension;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Periodic task that prunes the stale links from the test to issue maps: links to issues that are done or were
+ * deleted, and links of tests that did not run in the recent builds of the job. What gets pruned is configured in the
+ * global configuration page, and in dry run mode the links are only reported in the log of this task.
+ */
+@Extension
+public class MappingCompactionWork extends AsyncPeriodicWork {
+    static final int ISSUES_PER_QUERY = 50;
+    //the fields required by the rest client for parsing the issues
+    private static final Set<String> SEARCH_FIELDS = new HashSet<>(Arrays.asList(
+            "summary", "issuetype", "created", "updated", "project", "status"));
+    private static final String DONE_CATEGORY = "done";
+
+    public MappingCompactionWork() {
+        super("JiraTestResultReporter mapping compaction");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return DAY;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        JiraTestDataPublisher.JiraTestDataPublisherDescriptor jiraDescriptor = JiraUtils.getJiraDescriptor();
+        if(jiraDescriptor == null || !jiraDescriptor.isCompactionEnabled()) {
+            return;
+        }
+        if(!jiraDescriptor.isPruneClosedIssues() && !jiraDescriptor.isPruneMissingTests()) {
+            listener.getLogger().println("No compaction policy enabled, nothing to do");
+            return;
+        }
+
+        PrintStream logger = listener.getLogger();
+        boolean dryRun = jiraDescriptor.isCompactionDryRun();
+        JiraRestClient restClient = jiraDescriptor.getRestClient();
+        JiraRestClientExtension restClientExtension = jiraDescriptor.getRestClientExtension();
+        IssueLookup issueLookup = restClient != null && restClientExtension != null
+                ? new JiraIssueLookup(restClient, restClientExtension) : null;
+        int totalPruned = 0;
+        for(String jobName : TestToIssueMapping.getInstance().getRegisteredJobNames()) {
+            Job job = Jenkins.getInstance().getItemByFullName(jobName, Job.class);
+            if(job == null) {
+                continue;
+            }
+
+            Map<String, String> jobMap = TestToIssueMapping.getInstance().getTestToIssueMap(job);
+            if(jobMap.isEmpty()) {
+                continue;
+            }
+
+            Map<String, String> stale = new HashMap<>();
+            if(jiraDescriptor.isPruneMissingTests()) {
+                Set<String> recentTestIds = getRecentTestIds(job, jiraDescriptor.getCompactionBuildsToScan());
+                if(recentTestIds != null) {
+                    for(Map.Entry<String, String> entry : jobMap.entrySet()) {
+                        if(!recentTestIds.contains(entry.getKey())) {
+                            logger.println(job.getFullName() + ": " + entry.getKey() + " -> " + entry.getValue()
+                                    + " (test missing from the recent builds)");
+                            stale.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                }
+            }
+
+            if(jiraDescriptor.isPruneClosedIssues()) {
+                Map<String, String> closedIssues = issueLookup != null
+                        ? getClosedIssues(new HashSet<>(jobMap.values()), issueLookup, listener)
+                        : new HashMap<String, String>();
+                for(Map.Entry<String, String> entry : jobMap.entrySet()) {
+                    if(!stale.containsKey(entry.getKey()) && closedIssues.containsKey(entry.getValue())) {
+                        logger.println(job.getFullName() + ": " + entry.getKey() + " -> " + entry.getValue()
+                                + " (" + closedIssues.get(entry.getValue()) + ")");
+                        stale.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+
+            if(!stale.isEmpty() && !dryRun) {
+                totalPruned += TestToIssueMapping.getInstance().removeTestToIssueMappings(job, stale);
+            } else {
+                totalPruned += stale.size();
+            }
+        }
+
+        logger.println((dryRun ? "Dry run, links that would be pruned: " : "Links pruned: ") + totalPruned);
+    }
+
+    /**
+     * Collects the ids of the tests that ran in the recent builds of a job
+     * @param job the job
+     * @param builds the number of builds to look into
+     * @return the test ids, or null if none of the builds has test results
+     */
+    private Set<String> getRecentTestIds(Job job, int builds) {
+        Set<String> testIds = new HashSet<>();
+        boolean foundResults = false;
+        for(Object o : job.getBuilds().limit(builds)) {
+            TestResultAction action = ((Run) o).getAction(TestResultAction.class);
+            if(action == null || action.getResult() == null) {
+                continue;
+            }
+            foundResults = true;
+            for(CaseResult test : JiraTestDataPublisher.getTestCaseResults(action.getResult())) {
+                testIds.add(test.getId());
+            }
+        }
+        return foundResults ? testIds : null;
+    }
+
+    /**
+     * Access to the issues in Jira, separated so that the compaction can be tested without a server
+     */
+    interface IssueLookup {
+        /**
+         * Finds which of the given issues have a status in the Done category
+         * @param issueKeys the issue keys, at most {@value MappingCompactionWork#ISSUES_PER_QUERY}
+         * @return the keys of the issues that are done
+         * @throws RestClientException if the search fails, which also happens when one of the issues was deleted
+         */
+        Set<String> searchDone(List<String> issueKeys);
+
+        /**
+         * Checks if the status of a single issue is in the Done category
+         * @param issueKey the issue key
+         * @return true if the issue is done
+         * @throws RestClientException if the issue cannot be fetched, with the 404 status code if it doesn't exist
+         */
+        boolean isDone(String issueKey);
+
+        /**
+         * Confirms that an issue which could not be fetched was deleted. Jira answers 404 both for the deleted issues
+         * and for the ones the user cannot browse, so the issue only counts as deleted if its project can still be
+         * browsed and a search for its key fails as well.
+         * @param issueKey the issue key
+         * @return true if the issue was deleted, false if it might only be hidden from the user
+         */
+        boolean isDeleted(String issueKey);
+    }
+
+    private static class JiraIssueLookup implements IssueLookup {
+        private final JiraRestClient restClient;
+        private final JiraRestClientExtension restClientExtension;
+
+        JiraIssueLookup(JiraRestClient restClient, JiraRestClientExtension restClientExtension) {
+            this.restClient = restClient;
+            this.restClientExtension = restClientExtension;
+        }
+
+        @Override
+        public Set<String> searchDone(List<String> issueKeys) {
+            String jql = new JqlBuilder().append("statusCategory = Done and key in ").strings(issueKeys).build();
+            SearchResult searchResult = restClient.getSearchClient()
+                    .searchJql(jql, ISSUES_PER_QUERY, 0, SEARCH_FIELDS).claim();
+            Set<String> done = new HashSet<>();
+            for(Issue issue : searchResult.getIssues()) {
+                done.add(issue.getKey());
+            }
+            return done;
+        }
+
+        @Override
+        public boolean isDone(String issueKey) {
+            IssueSummary issue = restClientExtension.getIssueSummary(issueKey, false).claim();
+            return DONE_CATEGORY.equals(issue.getStatusCategory());
+        }
+
+        @Override
+        public boolean isDeleted(String issueKey) {
+            int separator = issueKey.lastIndexOf('-');
+            if(separator <= 0) {
+                return false;
+            }
+            try {
+                restClient.getProjectClient().getProject(issueKey.substring(0, separator)).claim();
+            } catch (RestClientException e) {
+                //the whole project is hidden from the user, or gone, the issue cannot be told apart
+                return false;
+            }
+            try {
+                String jql = new JqlBuilder().append("key = ").string(issueKey).build();
+                restClient.getSearchClient().searchJql(jql, 1, 0, SEARCH_FIELDS).claim();
+                return false;
+            } catch (RestClientException e) {
+                return e.getStatusCode().isPresent() && e.getStatusCode().get() == HttpServletResponse.SC_BAD_REQUEST;
+            }
+        }
+    }
+
+    /**
+     * Finds which of the given issues are done or were deleted, querying Jira in batches. When the search of a batch
+     * fails, because one of its issues was deleted, the issues of the batch are fetched one by one.
+     * @param issueKeys the issue keys
+     * @param issueLookup access to the issues
+     * @param listener listener, used for reporting errors
+     * @return map from the keys of the issues whose links can be pruned to the reason
+     */
+    static Map<String, String> getClosedIssues(Set<String> issueKeys, IssueLookup issueLookup, TaskListener listener) {
+        Map<String, String> closedIssues = new HashMap<>();
+        List<String> keys = new ArrayList<>(issueKeys);
+        for(int i = 0; i < keys.size(); i += ISSUES_PER_QUERY) {
+            List<String> batch = keys.subList(i, Math.min(i + ISSUES_PER_QUERY, keys.size()));
+            try {
+                for(String issueKey : issueLookup.searchDone(batch)) {
+                    closedIssues.put(issueKey, "issue done");
+                }
+                continue;
+            } catch (RestClientException e) {
+                listener.getLogger().println("Could not search for the issues " + batch + ", checking them one by one: "
+                        + JiraUtils.getErrorMessage(e, " "));
+            }
+
+            for(String issueKey : batch) {
+                try {
+                    if(issueLookup.isDone(issueKey)) {
+                        closedIssues.put(issueKey, "issue done");
+                    }
+                } catch (RestClientException e) {
+                    if(e.getStatusCode().isPresent() && e.getStatusCode().get() == HttpServletResponse.SC_NOT_FOUND) {
+                        if(isDeleted(issueKey, issueLookup, listener)) {
+                            closedIssues.put(issueKey, "issue deleted");
+                        }
+                    } else {
+                        listener.error("Could not check the status of the issue " + issueKey + ": "
+                                + JiraUtils.getErrorMessage(e, " "));
+                    }
+                }
+            }
+        }
+        return closedIssues;
+    }
+
+    /**
+     * Checks if an issue that could not be fetched was deleted, reporting it as unreachable otherwise
+     */
+    private static boolean isDeleted(String issueKey, IssueLookup issueLookup, TaskListener listener) {
+        try {
+            if(issueLookup.isDeleted(issueKey)) {
+                return true;
+            }
+            listener.getLogger().println("The issue " + issueKey + " cannot be browsed, its links are kept");
+        } catch (RestClientException e) {
+            listener.error("Could not check if the issue " + issueKey + " was deleted: "
+                    + JiraUtils.getErrorMessage(e, " "));
+        }
+        return false;
+    }
+}
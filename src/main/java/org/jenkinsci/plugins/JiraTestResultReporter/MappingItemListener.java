@@ -0,0 +1,38 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+
+/**
+ * Drops the in-memory maps and change logs of the jobs that are deleted or renamed, so they are not kept for the
+ * life of the JVM. The map files move with the job directories, so the renamed jobs are loaded again when needed.
+ */
+@Extension
+public class MappingItemListener extends ItemListener {
+
+    @Override
+    public void onDeleted(Item item) {
+        TestToIssueMapping.getInstance().unregister(item.getFullName());
+    }
+
+    @Override
+    public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+        TestToIssueMapping.getInstance().unregister(oldFullName);
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bulk import and export of the test to issue map of a job, in the same json format as the map file. The map is
+ * locked only while it is read or changed in memory, never while waiting for the other side of the stream, so a
+ * slow client cannot block the tests from being linked to issues.
+ */
+public class MappingTransfer {
+    private MappingTransfer() {
+    }
+
+    /**
+     * Reads the whole input into a staging map, without touching the map of the job, so that an invalid or truncated
+     * input changes nothing
+     * @param in json object mapping test ids to issue keys.
+     * @return the links read, in the order of the input.
+     * @throws IOException if the input cannot be read or is not valid json
+     */
+    public static Map<String, String> readMappings(Reader in) throws IOException {
+        Map<String, String> mappings = new LinkedHashMap<>();
+        JsonReader reader = new JsonReader(in);
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                mappings.put(reader.nextName(), reader.nextString());
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            throw new IOException("Expected a json object mapping test ids to issue keys", e);
+        }
+        return mappings;
+    }
+
+    /**
+     * Applies the links read by {@link #readMappings}. The caller must hold the lock of the map, so that the links
+     * are applied at once.
+     * @param jobMap the map of the job.
+     * @param changeLog the change log of the job.
+     * @param mappings the links to apply.
+     * @param replace true to drop the existing links that are not in the input, false to merge the input into them.
+     * @return the number of links applied.
+     */
+    public static int applyMappings(Map<String, String> jobMap, MappingChangeLog changeLog,
+                                    Map<String, String> mappings, boolean replace) {
+        if(replace) {
+            for(Iterator<Map.Entry<String, String>> it = jobMap.entrySet().iterator(); it.hasNext(); ) {
+                String testId = it.next().getKey();
+                if(!mappings.containsKey(testId)) {
+                    it.remove();
+                    changeLog.record(testId, null);
+                }
+            }
+        }
+        for(Map.Entry<String, String> link : mappings.entrySet()) {
+            if(!link.getValue().equals(jobMap.put(link.getKey(), link.getValue()))) {
+                changeLog.record(link.getKey(), link.getValue());
+            }
+        }
+        return mappings.size();
+    }
+
+    /**
+     * Reads the whole input, then applies it under the lock of the map. If the input is invalid, the map is left
+     * untouched.
+     * @param jobMap the map of the job, also used as its lock.
+     * @param changeLog the change log of the job.
+     * @param in json object mapping test ids to issue keys.
+     * @param replace true to drop the existing links that are not in the input, false to merge the input into them.
+     * @return the number of links applied.
+     * @throws IOException if the input cannot be read or is not valid json
+     */
+    public static int importMappings(Map<String, String> jobMap, MappingChangeLog changeLog, Reader in,
+                                     boolean replace) throws IOException {
+        Map<String, String> mappings = readMappings(in);
+        synchronized (jobMap) {
+            return applyMappings(jobMap, changeLog, mappings, replace);
+        }
+    }
+
+    /**
+     * Writes a copy of the map, taken under its lock, as a json object
+     * @param jobMap the map of the job, also used as its lock.
+     * @param out the writer, it is not closed.
+     * @throws IOException error
+     */
+    public static void exportMap(Map<String, String> jobMap, Writer out) throws IOException {
+        Map<String, String> copy;
+        synchronized (jobMap) {
+            copy = new HashMap<>(jobMap);
+        }
+
+        JsonWriter writer = new JsonWriter(out);
+        writer.setIndent("  ");
+        writer.beginObject();
+        for(Map.Entry<String, String> entry : copy.entrySet()) {
+            writer.name(entry.getKey()).value(entry.getValue());
+        }
+        writer.endObject();
+        writer.flush();
+    }
+}
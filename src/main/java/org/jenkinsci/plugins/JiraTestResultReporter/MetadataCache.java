@@ -16,30 +16,65 @@
 package org.jenkinsci.plugins.JiraTestResultReporter;
 
 import com.atlassian.jira.rest.client.api.GetCreateIssueMetadataOptions;
+import com.atlassian.jira.rest.client.api.IdentifiableEntity;
 import com.atlassian.jira.rest.client.api.IssueRestClient;
+import com.atlassian.jira.rest.client.api.NamedEntity;
 import com.atlassian.jira.rest.client.api.domain.CimFieldInfo;
 import com.atlassian.jira.rest.client.api.domain.CimIssueType;
 import com.atlassian.jira.rest.client.api.domain.CimProject;
+import com.atlassian.jira.rest.client.api.domain.CustomFieldOption;
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import hudson.Util;
 import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by tuicu.
  * Cache for requests made about metadata required for configuring fields in the job configuration page (config.jelly)
  */
 public class MetadataCache {
-    final Map<String, HashMap<String, CacheEntry>> fieldConfigCache = new HashMap<>();
+    private static class IdGetter {
+        private final Method method;
+
+        IdGetter(Method method) {
+            this.method = method;
+        }
+    }
+
+    private static final ConcurrentMap<Class<?>, IdGetter> ID_GETTERS = new ConcurrentHashMap<>();
+
+    /**
+     * The field boxes and the allowed values for one project and issue type. It holds only names and ids, so it can
+     * be saved on disk and loaded after a restart.
+     */
     public static class CacheEntry {
-        private Map<String, CimFieldInfo> fieldInfoMap;
         private ListBoxModel stringFieldBox;
         private ListBoxModel selectableFieldBox;
         private ListBoxModel stringArrayFieldBox;
         private ListBoxModel selectableArrayFieldBox;
         private ListBoxModel userFieldBox;
+        private Map<String, ListBoxModel> allowedValues;
+        //built on first use, also for the entries loaded from disk
+        private transient Map<String, OptionIndex> allowedValuesIndexes;
 
         /**
          * Constructor
@@ -49,13 +84,13 @@ public class MetadataCache {
             stringFieldBox = new ListBoxModel();
             selectableFieldBox = new ListBoxModel();
             stringArrayFieldBox = new ListBoxModel();
-            selectableFieldBox = new ListBoxModel();
             selectableArrayFieldBox = new ListBoxModel();
             userFieldBox = new ListBoxModel();
+            allowedValues = new HashMap<>();
 
             for(CimProject project : metadata) {
                 for(CimIssueType cimIssueType : project.getIssueTypes()) {
-                    fieldInfoMap = cimIssueType.getFields();
+                    Map<String, CimFieldInfo> fieldInfoMap = cimIssueType.getFields();
                     Set<Map.Entry<String, CimFieldInfo>> entrySet = fieldInfoMap.entrySet();
                     for(Map.Entry<String, CimFieldInfo> entry : entrySet) {
                         //listInfo(entry);
@@ -74,6 +109,10 @@ public class MetadataCache {
                         else if(entry.getValue().getSchema().getType().equals("user")) {
                             userFieldBox.add(new ListBoxModel.Option(entry.getValue().getName(), entry.getKey(), false));
                         }
+
+                        if(entry.getValue().getAllowedValues() != null) {
+                            allowedValues.put(entry.getKey(), getAllowedValuesBox(entry.getValue().getAllowedValues()));
+                        }
                     }
                     break; //the request is made for just one issue type
                 }
@@ -81,6 +120,59 @@ public class MetadataCache {
             }
         }
 
+        /**
+         * Converts the allowed values of a field to a ListBoxModel, with the names as labels and the ids as values
+         * @param values allowed values
+         * @return ListBoxModel
+         */
+        private static ListBoxModel getAllowedValuesBox(Iterable<Object> values) {
+            ListBoxModel listBox = new ListBoxModel();
+            for (Object o : values) {
+                if(o instanceof CustomFieldOption) {
+                    CustomFieldOption option = (CustomFieldOption) o;
+                    listBox.add(option.getValue(), option.getId().toString());
+                } else if (o instanceof IdentifiableEntity && o instanceof NamedEntity) {
+                    listBox.add(((NamedEntity) o).getName(), ((IdentifiableEntity<Long>) o).getId().toString());
+                //work-around for Components and Fix Versions
+                // even though they have ids, for some reason they don't implement IdentifiableEntity
+                // so I'm invoking the getter for the id using reflection
+                } else if (o instanceof  NamedEntity) {
+                    Method m = getIdGetter(o.getClass());
+                    if(m == null) {
+                        continue;
+                    }
+                    try {
+                        Object id = m.invoke(o);
+                        if(id != null) {
+                            listBox.add(((NamedEntity) o).getName(), id.toString());
+                        }
+                    } catch (Exception e) {
+                    }
+                }
+            }
+            return listBox;
+        }
+
+        /**
+         * Getter for the getId method of a class, looked up only once per class
+         * @param type the class
+         * @return the method, or null if the class doesn't have one
+         */
+        private static Method getIdGetter(Class<?> type) {
+            IdGetter idGetter = ID_GETTERS.get(type);
+            if(idGetter == null) {
+                Method method;
+                try {
+                    method = type.getMethod("getId");
+                } catch (NoSuchMethodException e) {
+                    method = null;
+                }
+                idGetter = new IdGetter(method);
+                ID_GETTERS.put(type, idGetter);
+            }
+            return idGetter.method;
+        }
+
         public ListBoxModel getStringFieldBox() { return stringFieldBox; }
 
         public ListBoxModel getSelectableFieldBox() { return selectableFieldBox; }
@@ -91,9 +183,110 @@ public class MetadataCache {
 
         public ListBoxModel getUserFieldBox() { return userFieldBox; }
 
-        public Map<String, CimFieldInfo> getFieldInfoMap() { return fieldInfoMap; }
+        /**
+         * Getter for the allowed values of a field
+         * @param fieldKey the field key
+         * @return ListBoxModel with the allowed values, empty if the field has none
+         */
+        public ListBoxModel getAllowedValues(String fieldKey) {
+            ListBoxModel values = allowedValues.get(fieldKey);
+            return values != null ? values : new ListBoxModel();
+        }
+
+        /**
+         * Getter for the allowed values of a field whose name starts with a prefix, ignoring the case
+         * @param fieldKey the field key
+         * @param prefix the prefix, null or empty for all the values
+         * @return ListBoxModel with the matching values
+         */
+        public ListBoxModel getAllowedValues(String fieldKey, String prefix) {
+            if(prefix == null || prefix.isEmpty()) {
+                return getAllowedValues(fieldKey);
+            }
+            ListBoxModel values = allowedValues.get(fieldKey);
+            if(values == null) {
+                return new ListBoxModel();
+            }
+
+            OptionIndex index;
+            synchronized (this) {
+                if(allowedValuesIndexes == null) {
+                    allowedValuesIndexes = new HashMap<>();
+                }
+                index = allowedValuesIndexes.get(fieldKey);
+                if(index == null) {
+                    index = new OptionIndex(values);
+                    allowedValuesIndexes.put(fieldKey, index);
+                }
+            }
+            return index.startingWith(prefix);
+        }
+
+        /**
+         * Checks that all the fields were restored, after loading the entry from disk
+         * @return true if the entry is complete
+         */
+        private boolean isComplete() {
+            return stringFieldBox != null && selectableFieldBox != null && stringArrayFieldBox != null
+                    && selectableArrayFieldBox != null && userFieldBox != null && allowedValues != null;
+        }
     }
 
+    /**
+     * Key of the cache, the metadata is requested for one project and one issue type. It also depends on the server
+     * and on the user, since only the projects where the user can create issues are returned.
+     */
+    private static class Key {
+        private final String server;
+        private final String projectKey;
+        private final String issueType;
+
+        Key(String server, String projectKey, String issueType) {
+            this.server = server;
+            this.projectKey = projectKey;
+            this.issueType = issueType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return server.equals(key.server)
+                    && (projectKey != null ? projectKey.equals(key.projectKey) : key.projectKey == null)
+                    && (issueType != null ? issueType.equals(key.issueType) : key.issueType == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = server.hashCode();
+            result = 31 * result + (projectKey != null ? projectKey.hashCode() : 0);
+            return 31 * result + (issueType != null ? issueType.hashCode() : 0);
+        }
+
+        @Override
+        public String toString() {
+            return projectKey + "/" + issueType;
+        }
+    }
+
+    private static final String PROPERTY_PREFIX = MetadataCache.class.getName();
+    static final int MAX_SIZE = Integer.getInteger(PROPERTY_PREFIX + ".maxSize", 200);
+    static final long TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(Integer.getInteger(PROPERTY_PREFIX + ".ttlMinutes", 60));
+    static final long REFRESH_AFTER = TIME_TO_LIVE / 2;
+    static final long NEGATIVE_TIME_TO_LIVE = TimeUnit.SECONDS.toMillis(30);
+
+    private static final String CACHE_DIR = "JiraTestResultReporter-metadata";
+
+    private final ExpiringCache<Key, CacheEntry> fieldConfigCache =
+            new ExpiringCache<Key, CacheEntry>("Metadata cache", MAX_SIZE, TIME_TO_LIVE, REFRESH_AFTER, NEGATIVE_TIME_TO_LIVE) {
+                @Override
+                protected CacheEntry load(Key key) throws Exception {
+                    CacheEntry entry = loadCacheEntry(key.projectKey, key.issueType);
+                    save(key, entry);
+                    return entry;
+                }
+            };
 
     /**
      * Method for removing the cache entry
@@ -101,70 +294,131 @@ public class MetadataCache {
      * @param issueType the issue type.
      */
     public void removeCacheEntry(String projectKey, String issueType) {
-        if(fieldConfigCache.containsKey(projectKey) && fieldConfigCache.get(projectKey).containsKey(issueType)) {
-            synchronized (fieldConfigCache.get(projectKey)) {
-                fieldConfigCache.get(projectKey).remove(issueType);
-            }
+        Key key = new Key(getServer(), projectKey, issueType);
+        fieldConfigCache.invalidate(key);
+        try {
+            Files.deleteIfExists(getPathToFile(key));
+        } catch (IOException e) {
+            JiraUtils.logWarning("Could not remove the saved metadata for " + key, e);
         }
     }
 
     /**
-     * Getter for a cache entry, it will first look in the map too see if there is an entry associated with the
-     * arguments, if not it will make the request for the metadata, create the entry, store it in the map and return it
+     * Getter for a cache entry, it will first look in the cache too see if there is an entry associated with the
+     * arguments, if not it will make the request for the metadata, create the entry, store it in the cache and return
+     * it. Concurrent requests for the same entry wait for the same request.
      * @param projectKey the projectKey
      * @param issueType the issueType
-     * @return the CacheEntry given the project key and issuetype.
+     * @return the CacheEntry given the project key and issuetype, or null if the metadata could not be loaded
      */
     public CacheEntry getCacheEntry(String projectKey, String issueType) {
-        CacheEntry cacheEntry;
-        try{
-            cacheEntry = fieldConfigCache.get(projectKey).get(issueType);
-            if(cacheEntry == null) {
-                fieldConfigCache.get(projectKey).remove(issueType);
-            } else {
-                return cacheEntry;
+        Key key = new Key(getServer(), projectKey, issueType);
+        //failed loads are cached too, so the disk is not read again on every request while Jira is not reachable
+        if(!fieldConfigCache.isCached(key)) {
+            //after a restart, serve the metadata saved on disk and revalidate it in the background
+            CacheEntry saved = loadSaved(key);
+            if(saved != null) {
+                fieldConfigCache.putStale(key, saved);
             }
-        }catch (NullPointerException e) {
-            //Absent project key or issue type
         }
+        return fieldConfigCache.get(key);
+    }
 
-        if(!fieldConfigCache.containsKey(projectKey)) {
-            synchronized (fieldConfigCache) {
-                if(!fieldConfigCache.containsKey(projectKey))
-                fieldConfigCache.put(projectKey, new HashMap<String, CacheEntry>());
-            }
-        }
+    /**
+     * Removes all the entries from memory, called when the Jira server or the user changes. The ones saved on disk
+     * are kept, since they are saved separately for each server and user.
+     */
+    public void clear() {
+        fieldConfigCache.invalidateAll();
+    }
 
+    /**
+     * Getter for the server and the user the metadata is requested with
+     * @return string identifying the server and the user
+     */
+    private static String getServer() {
+        JiraTestDataPublisher.JiraTestDataPublisherDescriptor jiraDescriptor = JiraUtils.getJiraDescriptor();
+        return jiraDescriptor.getJiraUrl() + " " + jiraDescriptor.getUsername();
+    }
 
-        HashMap<String, CacheEntry> issueTypeToFields = fieldConfigCache.get(projectKey);
-        cacheEntry = issueTypeToFields.get(issueType);
-        if(cacheEntry == null) {
-            synchronized (issueTypeToFields) {
-                if(!issueTypeToFields.containsKey(issueType)) {
-                    IssueRestClient issueRestClient = JiraUtils.getJiraDescriptor().getRestClient().getIssueClient();
-                    Iterable<CimProject> metadata;
-                    try {
-                        metadata = issueRestClient.getCreateIssueMetadata(
-                                new GetCreateIssueMetadataOptions(
-                                        Collections.singletonList(GetCreateIssueMetadataOptions.EXPAND_PROJECTS_ISSUETYPES_FIELDS),
-                                        null,
-                                        Collections.singletonList(Long.parseLong(issueType)),
-                                        Collections.singletonList(projectKey), null)
-                        ).claim();
-                    }
-                    catch (Exception e) {
-                        JiraUtils.logError("ERROR: Unknown error", e);
-                        return null;
-                    }
+    /**
+     * Getter for the cache statistics
+     * @return the statistics
+     */
+    public ExpiringCache.Stats getStats() {
+        return fieldConfigCache.getStats();
+    }
 
-                    cacheEntry = new CacheEntry(metadata);
-                    issueTypeToFields.put(issueType, cacheEntry);
-                    return cacheEntry;
-                }
+    /**
+     * Makes the request for the metadata
+     * @param projectKey the projectKey
+     * @param issueType the issueType
+     * @return the new CacheEntry
+     */
+    private static CacheEntry loadCacheEntry(String projectKey, String issueType) {
+        IssueRestClient issueRestClient = JiraUtils.getJiraDescriptor().getRestClient().getIssueClient();
+        Iterable<CimProject> metadata = issueRestClient.getCreateIssueMetadata(
+                new GetCreateIssueMetadataOptions(
+                        Collections.singletonList(GetCreateIssueMetadataOptions.EXPAND_PROJECTS_ISSUETYPES_FIELDS),
+                        null,
+                        Collections.singletonList(Long.parseLong(issueType)),
+                        Collections.singletonList(projectKey), null)
+        ).claim();
+        return new CacheEntry(metadata);
+    }
+
+    /**
+     * Constructs the path for the file with the saved metadata, in a directory named after the digest of the server
+     * and the user
+     * @param key the key
+     * @return path of the file
+     */
+    private static Path getPathToFile(Key key) {
+        String fileName = String.valueOf(key.projectKey).replaceAll("[^\\w-]", "_") + "-"
+                + String.valueOf(key.issueType).replaceAll("[^\\w-]", "_") + ".json";
+        return Jenkins.getInstance().getRootDir().toPath().resolve(CACHE_DIR).resolve(Util.getDigestOf(key.server))
+                .resolve(fileName);
+    }
+
+    /**
+     * Saves the metadata on disk, so it is available after a restart
+     * @param key the key
+     * @param entry the metadata
+     */
+    private static void save(Key key, CacheEntry entry) {
+        try {
+            Path file = getPathToFile(key);
+            Files.createDirectories(file.getParent());
+            Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+                new Gson().toJson(entry, CacheEntry.class, writer);
+            }
+            try {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
             }
-            cacheEntry = issueTypeToFields.get(issueType);
+        } catch (JsonIOException | IOException e) {
+            JiraUtils.logWarning("Could not save the metadata for " + key, e);
         }
+    }
 
-        return cacheEntry;
+    /**
+     * Loads the metadata saved on disk
+     * @param key the key
+     * @return the metadata, or null if it was not saved or it could not be loaded
+     */
+    private static CacheEntry loadSaved(Key key) {
+        Path file = getPathToFile(key);
+        if(!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            CacheEntry entry = new Gson().fromJson(reader, CacheEntry.class);
+            return entry != null && entry.isComplete() ? entry : null;
+        } catch (JsonParseException | IOException e) {
+            JiraUtils.logWarning("Could not load the saved metadata for " + key, e);
+            return null;
+        }
     }
 }
@@ -0,0 +1,118 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms up the caches after Jenkins starts, when enabled in the global configuration: fetches the field metadata for
+ * all the project keys and issue types used in the job configurations, the projects, and the statuses, so that nobody
+ * has to wait for a cold request to Jira.
+ */
+public class MetadataPrefetcher {
+
+    private MetadataPrefetcher() {
+    }
+
+    /**
+     * Starts the prefetch in the background, once the jobs are loaded
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void prefetchAfterStartup() {
+        final JiraTestDataPublisher.JiraTestDataPublisherDescriptor jiraDescriptor = JiraUtils.getJiraDescriptor();
+        if(jiraDescriptor == null || !jiraDescriptor.isPrefetchMetadata() || jiraDescriptor.getRestClient() == null) {
+            return;
+        }
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                prefetch(jiraDescriptor);
+            }
+        });
+    }
+
+    /**
+     * Fetches the statuses and submits the fetches of the metadata for all the configured project keys and issue
+     * types, and of the projects. They run on the {@link JiraExecutor}, this method doesn't wait for them.
+     * @param jiraDescriptor the descriptor holding the caches
+     */
+    static void prefetch(final JiraTestDataPublisher.JiraTestDataPublisherDescriptor jiraDescriptor) {
+        final long start = System.currentTimeMillis();
+        jiraDescriptor.prefetchStatuses();
+
+        Map<String, Set<Long>> projectKeysAndIssueTypes = JobConfigMapping.getInstance().getProjectKeysAndIssueTypes();
+        List<Runnable> fetches = new ArrayList<>();
+        for(final Map.Entry<String, Set<Long>> entry : projectKeysAndIssueTypes.entrySet()) {
+            for(final Long issueType : entry.getValue()) {
+                fetches.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        jiraDescriptor.getCacheEntry(entry.getKey(), issueType.toString());
+                    }
+                });
+            }
+        }
+        final int metadataFetches = fetches.size();
+        for(final String projectKey : projectKeysAndIssueTypes.keySet()) {
+            fetches.add(new Runnable() {
+                @Override
+                public void run() {
+                    jiraDescriptor.getProjectInfo(projectKey);
+                }
+            });
+        }
+
+        //the last fetch to finish reports the total time
+        final AtomicInteger remaining = new AtomicInteger(fetches.size());
+        for(final Runnable fetch : fetches) {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        fetch.run();
+                    } catch (RuntimeException e) {
+                        JiraUtils.logError("ERROR: Jira metadata prefetch failed", e);
+                    } finally {
+                        if(remaining.decrementAndGet() == 0) {
+                            JiraUtils.log("Prefetched the Jira metadata for " + metadataFetches
+                                    + " project keys and issue types in " + (System.currentTimeMillis() - start) + " ms");
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs a task on the {@link JiraExecutor}, or on the calling thread if its queue is full
+     * @param task the task
+     */
+    private static void submit(Runnable task) {
+        try {
+            JiraExecutor.get().execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import hudson.util.ListBoxModel;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Index of the options of a ListBoxModel by name, for finding the options whose name starts with a prefix without
+ * going through all of them (ex. the fix versions of a project with thousands of versions).
+ */
+public class OptionIndex {
+    private final ListBoxModel options;
+    private final String[] names;
+    private final int[] positions;
+
+    /**
+     * Constructor
+     * @param options the options, must not be modified afterwards
+     */
+    public OptionIndex(ListBoxModel options) {
+        this.options = options;
+        final String[] allNames = new String[options.size()];
+        Integer[] order = new Integer[options.size()];
+        for(int i = 0; i < options.size(); i++) {
+            allNames[i] = normalize(options.get(i).name);
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return allNames[a].compareTo(allNames[b]);
+            }
+        });
+
+        names = new String[order.length];
+        positions = new int[order.length];
+        for(int i = 0; i < order.length; i++) {
+            names[i] = allNames[order[i]];
+            positions[i] = order[i];
+        }
+    }
+
+    /**
+     * Getter for the options whose name starts with the prefix, ignoring the case
+     * @param prefix the prefix, null or empty for all the options
+     * @return ListBoxModel with the matching options, in their original order
+     */
+    public ListBoxModel startingWith(String prefix) {
+        if(prefix == null || prefix.isEmpty()) {
+            return options;
+        }
+
+        String normalizedPrefix = normalize(prefix);
+        int low = 0;
+        int high = names.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(names[middle].compareTo(normalizedPrefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int end = low;
+        while(end < names.length && names[end].startsWith(normalizedPrefix)) {
+            end++;
+        }
+        int[] matches = Arrays.copyOfRange(positions, low, end);
+        Arrays.sort(matches);
+
+        ListBoxModel result = new ListBoxModel();
+        for(int position : matches) {
+            result.add(options.get(position));
+        }
+        return result;
+    }
+
+    private static String normalize(String name) {
+        return name != null ? name.toLowerCase(Locale.ENGLISH) : "";
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a task for every element of a collection on a bounded pool of threads and waits for all of them to finish.
+ * Used for loading the per job files at startup, where the work is mostly waiting for the disk.
+ */
+public class ParallelLoader {
+    public static final int DEFAULT_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * The work done for each element
+     * @param <T> element type
+     */
+    public interface Task<T> {
+        void run(T item) throws Exception;
+    }
+
+    private ParallelLoader() {
+    }
+
+    /**
+     * Runs the task for all the elements, errors are logged and do not stop the other elements from being processed
+     * @param name name of the threads, for debugging
+     * @param items the elements
+     * @param threads maximum number of threads
+     * @param task the task
+     * @param <T> element type
+     */
+    public static <T> void forEach(final String name, Collection<? extends T> items, int threads, final Task<T> task) {
+        if(items.size() <= 1 || threads <= 1) {
+            for(T item : items) {
+                runTask(name, task, item);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, items.size()), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + " #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for(final T item : items) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        runTask(name, task, item);
+                    }
+                }));
+            }
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            JiraUtils.logWarning(name + " interrupted", e);
+        } catch (ExecutionException e) {
+            JiraUtils.logError(name + " failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> void runTask(String name, Task<T> task, T item) {
+        try {
+            task.run(item);
+        } catch (Exception e) {
+            JiraUtils.logError("ERROR: " + name + " failed for " + item, e);
+        }
+    }
+}
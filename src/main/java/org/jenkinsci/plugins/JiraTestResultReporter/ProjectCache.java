@@ -0,0 +1,113 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.atlassian.jira.rest.client.api.JiraRestClient;
+import com.atlassian.jira.rest.client.api.domain.IssueType;
+import com.atlassian.jira.rest.client.api.domain.Project;
+import hudson.util.ListBoxModel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache for the project information used in the job configuration page: the name of the project and its issue types.
+ * Only these are kept from the project, not its components and versions. The project is fetched with the project
+ * endpoint, like before the cache, so the projects that the user can browse but not create issues in are still valid.
+ */
+public class ProjectCache {
+    /**
+     * The project information needed by the job configuration page
+     */
+    public static class ProjectInfo {
+        private final String key;
+        private final String name;
+        private final ListBoxModel issueTypes;
+
+        /**
+         * Constructor
+         * @param project the project
+         */
+        ProjectInfo(Project project) {
+            this.key = project.getKey();
+            this.name = project.getName();
+            this.issueTypes = new ListBoxModel();
+            for(IssueType issueType : project.getIssueTypes()) {
+                issueTypes.add(new ListBoxModel.Option(issueType.getName(), issueType.getId().toString(),
+                        issueType.getName().equals("Bug")));
+            }
+        }
+
+        public String getKey() { return key; }
+
+        public String getName() { return name; }
+
+        /**
+         * Getter for the issue types, with Bug selected
+         * @return ListBoxModel with the issue types
+         */
+        public ListBoxModel getIssueTypes() { return issueTypes; }
+    }
+
+    private static final String PROPERTY_PREFIX = ProjectCache.class.getName();
+    static final int MAX_SIZE = Integer.getInteger(PROPERTY_PREFIX + ".maxSize", 200);
+    static final long TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(Integer.getInteger(PROPERTY_PREFIX + ".ttlMinutes", 60));
+    static final long REFRESH_AFTER = TIME_TO_LIVE / 2;
+    static final long NEGATIVE_TIME_TO_LIVE = TimeUnit.SECONDS.toMillis(30);
+
+    private final ExpiringCache<String, ProjectInfo> projects =
+            new ExpiringCache<String, ProjectInfo>("Project cache", MAX_SIZE, TIME_TO_LIVE, REFRESH_AFTER, NEGATIVE_TIME_TO_LIVE) {
+                @Override
+                protected ProjectInfo load(String projectKey) throws Exception {
+                    return loadProjectInfo(projectKey);
+                }
+            };
+
+    /**
+     * Getter for the project information
+     * @param projectKey the project key
+     * @return the project information, or null if the project does not exist or Jira could not be reached
+     */
+    public ProjectInfo getProjectInfo(String projectKey) {
+        if(projectKey == null || projectKey.isEmpty()) {
+            return null;
+        }
+        return projects.get(projectKey);
+    }
+
+    /**
+     * Removes all the cached projects, called when the Jira server changes
+     */
+    public void clear() {
+        projects.invalidateAll();
+    }
+
+    /**
+     * Getter for the cache statistics
+     * @return the statistics
+     */
+    public ExpiringCache.Stats getStats() {
+        return projects.getStats();
+    }
+
+    private static ProjectInfo loadProjectInfo(String projectKey) {
+        JiraRestClient restClient = JiraUtils.getJiraDescriptor().getRestClient();
+        if(restClient == null) {
+            return null;
+        }
+        Project project = restClient.getProjectClient().getProject(projectKey).claim();
+        return project != null ? new ProjectInfo(project) : null;
+    }
+}
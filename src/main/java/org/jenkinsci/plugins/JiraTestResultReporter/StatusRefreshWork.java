@@ -0,0 +1,41 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+
+/**
+ * Keeps the status category map up to date. Runs every minute, but the statuses are fetched only when the refresh
+ * interval from the global configuration passed, so the interval can be changed without a restart. The check runs on
+ * the Jenkins Timer, the statuses are fetched on the {@link JiraExecutor}, so a slow Jira doesn't hold a Timer thread.
+ */
+@Extension
+public class StatusRefreshWork extends PeriodicWork {
+
+    @Override
+    public long getRecurrencePeriod() {
+        return MIN;
+    }
+
+    @Override
+    protected void doRun() {
+        JiraTestDataPublisher.JiraTestDataPublisherDescriptor jiraDescriptor = JiraUtils.getJiraDescriptor();
+        if(jiraDescriptor != null) {
+            jiraDescriptor.refreshStatusesIfStale();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.FullStatus;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the Jira statuses, with their status categories, by name and by id. A new snapshot is
+ * created on every refresh and replaces the old one as a whole, so the readers never see a partial map.
+ */
+public class StatusSnapshot {
+    private final Map<String, FullStatus> byName;
+    private final Map<Long, FullStatus> byId;
+    private final long timestamp;
+
+    /**
+     * Constructor
+     * @param statuses the statuses returned by Jira
+     * @param timestamp when the statuses were fetched
+     */
+    public StatusSnapshot(Iterable<FullStatus> statuses, long timestamp) {
+        Map<String, FullStatus> byName = new HashMap<>();
+        Map<Long, FullStatus> byId = new HashMap<>();
+        for(FullStatus status : statuses) {
+            byName.put(status.getName(), status);
+            if(status.getId() != null) {
+                byId.put(status.getId(), status);
+            }
+        }
+        this.byName = Collections.unmodifiableMap(byName);
+        this.byId = Collections.unmodifiableMap(byId);
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Getter for the statuses by name
+     * @return unmodifiable map from status name to status
+     */
+    public Map<String, FullStatus> getByName() {
+        return byName;
+    }
+
+    /**
+     * Getter for the statuses by id
+     * @return unmodifiable map from status id to status
+     */
+    public Map<Long, FullStatus> getById() {
+        return byId;
+    }
+
+    /**
+     * Getter for the colour of the status category of a status
+     * @param statusName the status name
+     * @return the colour name, or null if the status is not known
+     */
+    public String getColorName(String statusName) {
+        FullStatus status = statusName != null ? byName.get(statusName) : null;
+        return status != null ? status.getColorName() : null;
+    }
+
+    /**
+     * Getter for the time when the statuses were fetched
+     * @return timestamp in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -16,9 +16,11 @@
 package org.jenkinsci.plugins.JiraTestResultReporter;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import hudson.matrix.MatrixProject;
@@ -26,8 +28,20 @@ import hudson.model.Job;
 import jenkins.model.Jenkins;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by tuicu.
@@ -48,16 +62,26 @@ public class TestToIssueMapping {
         return INSTANCE;
     }
 
-    private final Map<String, Map<String, String>> jobsMap;
+    private final ConcurrentHashMap<String, Map<String, String>> jobsMap;
+    private final Map<String, MappingChangeLog> changeLogs;
+    private final long epoch;
 
     /**
      * Constructor. It will look into all jobs to see if there are any maps saved from previous Jenkins runs.
      */
     private TestToIssueMapping() {
-        jobsMap = new HashMap<>();
-        for(Job job : Jenkins.getInstance().getItems(Job.class)) {
-            register(job);
-        }
+        jobsMap = new ConcurrentHashMap<>();
+        changeLogs = new HashMap<>();
+        epoch = System.currentTimeMillis();
+        //jobs in folders included. This runs during the class initialization, so the loading threads must not
+        //touch the static fields of this class (getInstance() included), or they will wait for it forever
+        ParallelLoader.forEach("JiraTestResultReporter map loader", Jenkins.getInstance().getAllItems(Job.class),
+                ParallelLoader.DEFAULT_THREADS, new ParallelLoader.Task<Job>() {
+                    @Override
+                    public void run(Job job) {
+                        register(job);
+                    }
+                });
     }
 
     /**
@@ -68,12 +92,20 @@ public class TestToIssueMapping {
     private void saveMap(Job job, Map<String, String> map) {
         try {
             Gson gson = new Gson();
-            try (FileOutputStream fileOut = new FileOutputStream(getPathToFileMap(job) + ".json");
+            //write to a temporary file first, so a failure in the middle of a large map doesn't corrupt the old one
+            Path mapFile = Paths.get(getPathToFileMap(job) + ".json");
+            Path tmpFile = Paths.get(getPathToFileMap(job) + ".json.tmp");
+            try (FileOutputStream fileOut = new FileOutputStream(tmpFile.toFile());
                     JsonWriter writer = new JsonWriter(new OutputStreamWriter(fileOut, "UTF-8")))
             {
                 writer.setIndent("  ");
                 gson.toJson(map, HashMap.class, writer);
             }
+            try {
+                Files.move(tmpFile, mapFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile, mapFile, StandardCopyOption.REPLACE_EXISTING);
+            }
         }
         catch (JsonIOException | IOException e) {
             JiraUtils.logError("ERROR: Could not save job map", e);
@@ -164,12 +196,34 @@ public class TestToIssueMapping {
         if(jobsMap.containsKey(job.getFullName()))
             return;
 
-        synchronized(jobsMap) {
-            if(jobsMap.containsKey(job.getFullName()))
-                return;
+        //the map is loaded without holding any lock, so that jobs can be loaded in parallel. If two threads load the
+        //same job, the first one wins
+        Map<String, String> jobMap = loadMap(job);
+        jobsMap.putIfAbsent(job.getFullName(), jobMap != null ? jobMap : new HashMap<String, String>());
+    }
 
-            jobsMap.put(job.getFullName(), loadMap(job));
+    /**
+     * Forgets the maps and the change logs of a job and of the jobs inside it (folders, matrix configurations), when
+     * it is deleted or renamed. A renamed job is loaded again from its file the next time it is needed.
+     * @param fullName the full name of the job, the old one if it was renamed.
+     */
+    public void unregister(String fullName) {
+        for(Iterator<String> it = jobsMap.keySet().iterator(); it.hasNext(); ) {
+            if(isSameOrInside(it.next(), fullName)) {
+                it.remove();
+            }
         }
+        synchronized (changeLogs) {
+            for(Iterator<String> it = changeLogs.keySet().iterator(); it.hasNext(); ) {
+                if(isSameOrInside(it.next(), fullName)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static boolean isSameOrInside(String jobName, String fullName) {
+        return jobName.equals(fullName) || jobName.startsWith(fullName + "/");
     }
 
     /**
@@ -188,6 +242,7 @@ public class TestToIssueMapping {
 
         synchronized (jobMap) {
             jobMap.put(testId, issueKey);
+            getChangeLog(job).record(testId, issueKey);
             saveMap(job, jobMap);
         }
     }
@@ -208,11 +263,85 @@ public class TestToIssueMapping {
         synchronized (jobMap) {
             if(jobMap.get(testId).equals(issueKey)) {
                 jobMap.remove(testId);
+                getChangeLog(job).record(testId, null);
                 saveMap(job, jobMap);
             }
         }
     }
 
+    /**
+     * Getter for the change log of a job, creates it if the job has none yet
+     * @param job the job.
+     * @return the change log.
+     */
+    private MappingChangeLog getChangeLog(Job job) {
+        synchronized (changeLogs) {
+            MappingChangeLog changeLog = changeLogs.get(job.getFullName());
+            if(changeLog == null) {
+                changeLog = new MappingChangeLog();
+                changeLogs.put(job.getFullName(), changeLog);
+            }
+            return changeLog;
+        }
+    }
+
+    /**
+     * Getter for the epoch of the in-memory change logs. The sequence numbers are only meaningful together with the
+     * epoch, since they start again from 0 every time Jenkins is restarted.
+     * @return the time when the mappings were loaded, in milliseconds.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Get the links added and removed since a given sequence number. If the change log cannot answer, because the
+     * client is too far behind or the epoch is not the current one, the whole map is returned instead.
+     * @param job the job, it must not be a matrix project.
+     * @param epoch the epoch known by the client.
+     * @param since the last sequence number known by the client.
+     * @return json object with either the "added" and "removed" entries or the full "map", see {@link #getEpoch()}
+     */
+    public JsonObject getChanges(Job job, long epoch, long since) {
+        Map<String, String> jobMap = jobsMap.get(job.getFullName());
+        if(jobMap == null) {
+            jobMap = new HashMap<>();
+        }
+        MappingChangeLog changeLog = getChangeLog(job);
+
+        JsonObject result = new JsonObject();
+        result.addProperty("epoch", this.epoch);
+        synchronized (jobMap) {
+            List<MappingChangeLog.Change> changes = epoch == this.epoch ? changeLog.getChangesSince(since) : null;
+            result.addProperty("sequence", changeLog.getSequence());
+            if(changes == null) {
+                result.addProperty("full", true);
+                result.add("map", GSON.toJsonTree(jobMap));
+                return result;
+            }
+
+            //only the last change of each test is relevant to the client
+            Map<String, String> lastChanges = new LinkedHashMap<>();
+            for(MappingChangeLog.Change change : changes) {
+                lastChanges.remove(change.getTestId());
+                lastChanges.put(change.getTestId(), change.getIssueKey());
+            }
+            JsonObject added = new JsonObject();
+            JsonArray removed = new JsonArray();
+            for(Map.Entry<String, String> entry : lastChanges.entrySet()) {
+                if(entry.getValue() != null) {
+                    added.addProperty(entry.getKey(), entry.getValue());
+                } else {
+                    removed.add(new JsonPrimitive(entry.getKey()));
+                }
+            }
+            result.addProperty("full", false);
+            result.add("added", added);
+            result.add("removed", removed);
+        }
+        return result;
+    }
+
     /**
      * Get the issue key associated with a test
      * @param job the job.
@@ -229,6 +358,154 @@ public class TestToIssueMapping {
         return jobMap.get(testId);
     }
 
+    /**
+     * Links a large number of tests to issues at once. The whole input is read first, in the same json format as the
+     * map file, then the links are applied and the map is saved once, under its lock. If the input is invalid, the
+     * map and its file are left untouched.
+     * @param job the job, it must not be a matrix project.
+     * @param in json object mapping test ids to issue keys.
+     * @param replace true to drop the existing links that are not imported, false to merge the new links into the existing ones.
+     * @return the number of links imported.
+     * @throws IOException if the input cannot be read or is not valid json
+     */
+    public int importMappings(Job job, Reader in, boolean replace) throws IOException {
+        Map<String, String> jobMap = jobsMap.get(job.getFullName());
+        if(jobMap == null) {
+            register(job);
+            jobMap = jobsMap.get(job.getFullName());
+        }
+
+        Map<String, String> mappings = MappingTransfer.readMappings(in);
+        synchronized (jobMap) {
+            int imported = MappingTransfer.applyMappings(jobMap, getChangeLog(job), mappings, replace);
+            saveMap(job, jobMap);
+            return imported;
+        }
+    }
+
+    /**
+     * Writes the map of a job as a stream, in the same json format as the map file.
+     * @param job the job, it must not be a matrix project.
+     * @param out the writer, it is not closed.
+     * @throws IOException error
+     */
+    public void exportMap(Job job, Writer out) throws IOException {
+        Map<String, String> jobMap = jobsMap.get(job.getFullName());
+        if(jobMap == null) {
+            jobMap = new HashMap<>();
+        }
+        MappingTransfer.exportMap(jobMap, out);
+    }
+
+    /**
+     * Unlink many tests at once, saving the map only once. A link is removed only if the test is still linked to the
+     * same issue.
+     * @param job the job.
+     * @param mappings map from test ids to the issue keys that should be unlinked.
+     * @return the number of links removed.
+     */
+    public int removeTestToIssueMappings(Job job, Map<String, String> mappings) {
+        Map<String, String> jobMap = jobsMap.get(job.getFullName());
+        if(jobMap == null) {
+            JiraUtils.logError("ERROR: Unregistered job " + job.getFullName());
+            return 0;
+        }
+
+        int removed = 0;
+        synchronized (jobMap) {
+            MappingChangeLog changeLog = getChangeLog(job);
+            for(Map.Entry<String, String> entry : mappings.entrySet()) {
+                if(entry.getValue().equals(jobMap.get(entry.getKey()))) {
+                    jobMap.remove(entry.getKey());
+                    changeLog.record(entry.getKey(), null);
+                    removed++;
+                }
+            }
+            if(removed > 0) {
+                saveMap(job, jobMap);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Unlink all the tests linked to an issue, from all the jobs
+     * @param issueKey the issue key.
+     * @return the number of links removed.
+     */
+    public int removeTestToIssueMappings(String issueKey) {
+        int removed = 0;
+        for(String jobName : getRegisteredJobNames()) {
+            Job job = Jenkins.getInstance().getItemByFullName(jobName, Job.class);
+            if(job == null) {
+                continue;
+            }
+
+            Map<String, String> linked = new HashMap<>();
+            for(Map.Entry<String, String> entry : getTestToIssueMap(job).entrySet()) {
+                if(issueKey.equals(entry.getValue())) {
+                    linked.put(entry.getKey(), entry.getValue());
+                }
+            }
+            if(!linked.isEmpty()) {
+                removed += removeTestToIssueMappings(job, linked);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Getter for the full names of the jobs that have a map loaded
+     * @return set of job full names.
+     */
+    public Set<String> getRegisteredJobNames() {
+        return new HashSet<>(jobsMap.keySet());
+    }
+
+    /**
+     * Getter for a copy of the map of a job
+     * @param job the job.
+     * @return map from test ids to issue keys, empty if the job is not registered.
+     */
+    public Map<String, String> getTestToIssueMap(Job job) {
+        Map<String, String> jobMap = jobsMap.get(job.getFullName());
+        if(jobMap == null) {
+            return new HashMap<>();
+        }
+        synchronized (jobMap) {
+            return new HashMap<>(jobMap);
+        }
+    }
+
+    /**
+     * Get the issue keys associated with a set of tests of the same job
+     * @param job the job.
+     * @param testIds the test ids.
+     * @return map from test id to issue key, tests without an issue are not included.
+     */
+    public Map<String, String> getTestIssueKeys(Job job, Collection<String> testIds) {
+        Map<String, String> jobMap = jobsMap.get(job.getFullName());
+        if(jobMap == null) {
+            JiraUtils.logWarning("WARNING: Unregistered job " + job.getFullName());
+            register(job);
+            jobMap = jobsMap.get(job.getFullName());
+        }
+
+        Map<String, String> result = new HashMap<>();
+        if(jobMap == null) {
+            return result;
+        }
+        synchronized (jobMap) {
+            for(String testId : testIds) {
+                String issueKey = jobMap.get(testId);
+                if(issueKey != null) {
+                    result.put(testId, issueKey);
+                }
+            }
+        }
+        return result;
+    }
+
     public JsonElement getMap(MatrixProject matrixProject, String subJobName) {
         Job job = matrixProject.getItem(subJobName);
         if (job == null)
@@ -0,0 +1,69 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.atlassian.jira.rest.client.api.JiraRestClient;
+import com.atlassian.jira.rest.client.api.domain.User;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache for the Jira users configured in the user fields, shared by all the jobs. The users are resolved the first
+ * time they are needed, instead of when the job configurations are loaded.
+ */
+public class UserCache {
+    private static final String PROPERTY_PREFIX = UserCache.class.getName();
+    static final int MAX_SIZE = Integer.getInteger(PROPERTY_PREFIX + ".maxSize", 500);
+    static final long TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(Integer.getInteger(PROPERTY_PREFIX + ".ttlMinutes", 60));
+    static final long REFRESH_AFTER = TIME_TO_LIVE / 2;
+    static final long NEGATIVE_TIME_TO_LIVE = TimeUnit.SECONDS.toMillis(30);
+
+    private final ExpiringCache<String, User> users =
+            new ExpiringCache<String, User>("User cache", MAX_SIZE, TIME_TO_LIVE, REFRESH_AFTER, NEGATIVE_TIME_TO_LIVE) {
+                @Override
+                protected User load(String username) throws Exception {
+                    JiraRestClient restClient = JiraUtils.getJiraDescriptor().getRestClient();
+                    return restClient != null ? restClient.getUserClient().getUser(username).claim() : null;
+                }
+            };
+
+    /**
+     * Getter for a user
+     * @param username the user name
+     * @return the user, or null if the user does not exist or Jira could not be reached
+     */
+    public User getUser(String username) {
+        if(username == null || username.isEmpty()) {
+            return null;
+        }
+        return users.get(username);
+    }
+
+    /**
+     * Removes all the cached users, called when the Jira server changes
+     */
+    public void clear() {
+        users.invalidateAll();
+    }
+
+    /**
+     * Getter for the cache statistics
+     * @return the statistics
+     */
+    public ExpiringCache.Stats getStats() {
+        return users.getStats();
+    }
+}
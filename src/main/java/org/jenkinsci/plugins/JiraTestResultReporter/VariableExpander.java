@@ -21,10 +21,14 @@ import hudson.tasks.junit.CaseResult;
 import hudson.tasks.test.TestResult;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Pattern;
 
 /**
@@ -35,7 +39,33 @@ public class VariableExpander {
     private interface Delegate {
         String expand(TestResult test, EnvVars envVars);
     }
+
+    /**
+     * Delegate for variables that expand other templates, so that the variables they use are shared with the
+     * context of the outer template
+     */
+    private static abstract class ContextDelegate implements Delegate {
+        /**
+         * Getter for the template expanded by this variable
+         * @return the template text
+         */
+        abstract String getTemplate();
+
+        String expand(ExpansionContext context) {
+            return expandVariables(context, getTemplate());
+        }
+
+        @Override
+        public String expand(TestResult test, EnvVars envVars) {
+            return expand(new ExpansionContext(test, envVars));
+        }
+    }
     static Pattern varPattern = java.util.regex.Pattern.compile("\\$\\{([\\w\\_]+)\\}");
+    /**
+     * Maximum length of the test output variables (stdout, stderr, stack trace). Jira rejects fields longer than
+     * 32767 characters, so for larger outputs only the beginning and the end are kept.
+     */
+    static final int MAX_OUTPUT_LENGTH = Integer.getInteger(VariableExpander.class.getName() + ".maxOutputLength", 10000);
     static final Map<String, Delegate> EXPANDERS = new HashMap<String, Delegate>();
     static {
         EXPANDERS.put("CRLF", new Delegate() {
@@ -72,7 +102,7 @@ public class VariableExpander {
         EXPANDERS.put("TEST_STACK_TRACE", new Delegate() {
             @Override
             public String expand(TestResult test, EnvVars envVars) {
-                return test.getErrorStackTrace();
+                return excerpt(test.getErrorStackTrace(), MAX_OUTPUT_LENGTH);
             }
         });
 
@@ -103,14 +133,14 @@ public class VariableExpander {
         EXPANDERS.put("TEST_STDERR", new Delegate() {
             @Override
             public String expand(TestResult test, EnvVars envVars) {
-                return test.getStderr();
+                return excerpt(test.getStderr(), MAX_OUTPUT_LENGTH);
             }
         });
 
         EXPANDERS.put("TEST_STDOUT", new Delegate() {
             @Override
             public String expand(TestResult test, EnvVars envVars) {
-                return test.getStdout();
+                return excerpt(test.getStdout(), MAX_OUTPUT_LENGTH);
             }
         });
 
@@ -177,53 +207,241 @@ public class VariableExpander {
             }
         });
 
-        EXPANDERS.put("DEFAULT_SUMMARY", new Delegate() {
+        EXPANDERS.put("DEFAULT_SUMMARY", new ContextDelegate() {
             @Override
-            public String expand(TestResult test, EnvVars envVars) {
-                return expandVariables(test, envVars, JiraUtils.getJiraDescriptor().getDefaultSummary());
+            String getTemplate() {
+                return JiraUtils.getJiraDescriptor().getDefaultSummary();
             }
         });
 
-        EXPANDERS.put("DEFAULT_DESCRIPTION", new Delegate() {
+        EXPANDERS.put("DEFAULT_DESCRIPTION", new ContextDelegate() {
             @Override
-            public String expand(TestResult test, EnvVars envVars) {
-                return expandVariables(test, envVars, JiraUtils.getJiraDescriptor().getDefaultDescription());
+            String getTemplate() {
+                return JiraUtils.getJiraDescriptor().getDefaultDescription();
             }
         });
     }
 
     /**
-     * Expands the variables from the test parameter, given a TestResult instance for extracting the
-     * necessary information
-     * @param test the test result.
-     * @param envVars the env vars.
-     * @param text the text.
-     * @return expands the variables.
+     * Shortens a text to at most maxLength characters, keeping its beginning and its end, with a marker in between
+     * telling how much was left out. If maxLength is too short even for the marker, the text is just truncated.
+     * @param text the text, can be null.
+     * @param maxLength maximum length of the result.
+     * @return the text, or an excerpt of it if it is too long.
      */
-    public static String expandVariables(TestResult test, EnvVars envVars, String text) {
-        if(test == null)
+    static String excerpt(String text, int maxLength) {
+        if(text == null || text.length() <= maxLength) {
             return text;
+        }
+
+        //the number of omitted characters has at most as many digits as the length of the text
+        int available = maxLength - omittedMarker(text.length()).length();
+        if(available < 0) {
+            return text.substring(0, Math.max(0, maxLength));
+        }
+        String marker = omittedMarker(text.length() - available);
+        int head = available / 2;
+        int tail = available - head;
+        return new StringBuilder(head + marker.length() + tail)
+                .append(text, 0, head)
+                .append(marker)
+                .append(text, text.length() - tail, text.length())
+                .toString();
+    }
+
+    private static String omittedMarker(int omitted) {
+        return "\n[... " + omitted + " characters omitted ...]\n";
+    }
+
+    /**
+     * A template parsed into its literal parts and the names of the variables between them, so that the text is
+     * scanned only once, no matter how many times it is expanded.
+     */
+    static final class Template {
+        private final String[] literals;
+        private final String[] variables;
+        private final int literalsLength;
+
+        private Template(List<String> literals, List<String> variables) {
+            this.literals = literals.toArray(new String[literals.size()]);
+            this.variables = variables.toArray(new String[variables.size()]);
+            int length = 0;
+            for(String literal : literals) {
+                length += literal.length();
+            }
+            this.literalsLength = length;
+        }
+
+        /**
+         * Parses the text, looking for the same variables as {@link #varPattern}
+         * @param text the text
+         * @return the template
+         */
+        static Template parse(String text) {
+            List<String> literals = new ArrayList<>();
+            List<String> variables = new ArrayList<>();
+            int literalStart = 0;
+            int start = text.indexOf("${");
+            while (start >= 0) {
+                int end = start + 2;
+                while (end < text.length() && isVariableChar(text.charAt(end))) {
+                    end++;
+                }
+                if(end > start + 2 && end < text.length() && text.charAt(end) == '}') {
+                    literals.add(text.substring(literalStart, start));
+                    variables.add(text.substring(start + 2, end));
+                    literalStart = end + 1;
+                    start = text.indexOf("${", literalStart);
+                } else {
+                    start = text.indexOf("${", start + 1);
+                }
+            }
+            literals.add(text.substring(literalStart));
+            return new Template(literals, variables);
+        }
+
+        private static boolean isVariableChar(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+        }
+
+        /**
+         * Getter for the names of the variables used in the template, in order of appearance
+         * @return variable names
+         */
+        List<String> getVariables() {
+            return Arrays.asList(variables);
+        }
+
+        /**
+         * Expands the template in a single pass. The value of each variable is computed only once per context, even
+         * if it appears multiple times in the template, or in other templates expanded in the same context.
+         * @param context the expansion context of the test.
+         * @return the expanded text.
+         */
+        String expand(ExpansionContext context) {
+            if(variables.length == 0) {
+                return literals[0];
+            }
+
+            String[] values = new String[variables.length];
+            int length = literalsLength;
+            for(int i = 0; i < variables.length; i++) {
+                String value = context.getVariable(variables[i]);
+                if(value == null) {
+                    value = resolve(variables[i], context);
+                    context.putVariable(variables[i], value);
+                }
+                values[i] = value;
+                length += value.length();
+            }
 
-        Matcher matcher = varPattern.matcher(text);
-        List<String> varsFound = new ArrayList<>();
-        while (matcher.find()) {
-            varsFound.add(matcher.group(1));
+            StringBuilder text = new StringBuilder(length);
+            for(int i = 0; i < variables.length; i++) {
+                text.append(literals[i]).append(values[i]);
+            }
+            return text.append(literals[variables.length]).toString();
         }
 
-        for(String varName : varsFound) {
-            if(envVars.containsKey(varName)) {
-                text = text.replace(new StringBuilder().append("${").append(varName).append("}").toString(),
-                                    envVars.get(varName));
-                continue;
+        private static String resolve(String varName, ExpansionContext context) {
+            EnvVars envVars = context.getEnvVars();
+            if(envVars != null && envVars.containsKey(varName)) {
+                return Util.fixNull(envVars.get(varName));
             }
+            Delegate delegate = EXPANDERS.get(varName);
+            if(delegate instanceof ContextDelegate) {
+                return Util.fixNull(((ContextDelegate) delegate).expand(context));
+            }
+            if(delegate != null) {
+                return Util.fixNull(delegate.expand(context.getTest(), envVars));
+            }
+            //unknown variables are left as they are
+            return "${" + varName + "}";
+        }
+    }
+
+    private static final int MAX_CACHED_TEMPLATES = 256;
+    private static final Map<String, Template> TEMPLATE_CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, Template>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+                    return size() > MAX_CACHED_TEMPLATES;
+                }
+            });
 
-            if(EXPANDERS.containsKey(varName)) {
-                text = text.replace(new StringBuilder().append("${").append(varName).append("}").toString(),
-                                    Util.fixNull(EXPANDERS.get(varName).expand(test, envVars)));
+    /**
+     * Getter for the parsed template, the templates are parsed only the first time they are used
+     * @param text the template text.
+     * @return the parsed template.
+     */
+    static Template getTemplate(String text) {
+        Template template = TEMPLATE_CACHE.get(text);
+        if(template == null) {
+            template = Template.parse(text);
+            TEMPLATE_CACHE.put(text, template);
+        }
+        return template;
+    }
+
+    /**
+     * Adds the names of the variables used in a text to a set, including the ones used by the templates that the
+     * text refers to, like DEFAULT_SUMMARY
+     * @param text the text, can be null.
+     * @param variables the set of variable names.
+     */
+    public static void collectVariables(String text, Set<String> variables) {
+        if(text == null)
+            return;
+
+        for(String varName : getTemplate(text).getVariables()) {
+            if(variables.add(varName)) {
+                Delegate delegate = EXPANDERS.get(varName);
+                if(delegate instanceof ContextDelegate) {
+                    collectVariables(((ContextDelegate) delegate).getTemplate(), variables);
+                }
             }
         }
+    }
+
+    /**
+     * Finds the variables that cannot be expanded: the ones that are neither defined by this plugin nor present in
+     * the environment variables. They are left as they are in the expanded text.
+     * @param variables the variable names.
+     * @param envVars the env vars, can be null.
+     * @return the names of the variables that cannot be expanded.
+     */
+    static Set<String> getUnresolvedVariables(Set<String> variables, EnvVars envVars) {
+        Set<String> unresolved = new TreeSet<>();
+        for(String varName : variables) {
+            if(!EXPANDERS.containsKey(varName) && (envVars == null || !envVars.containsKey(varName))) {
+                unresolved.add(varName);
+            }
+        }
+        return unresolved;
+    }
+
+    /**
+     * Expands the variables from the test parameter, given a TestResult instance for extracting the
+     * necessary information
+     * @param test the test result.
+     * @param envVars the env vars.
+     * @param text the text.
+     * @return expands the variables.
+     */
+    public static String expandVariables(TestResult test, EnvVars envVars, String text) {
+        return expandVariables(new ExpansionContext(test, envVars), text);
+    }
+
+    /**
+     * Expands the variables from the text, reusing the values already expanded in the context of the test
+     * @param context the expansion context of the test.
+     * @param text the text.
+     * @return expands the variables.
+     */
+    public static String expandVariables(ExpansionContext context, String text) {
+        if(context.getTest() == null || text == null)
+            return text;
 
-        return text;
+        return getTemplate(text).expand(context);
     }
 
 }
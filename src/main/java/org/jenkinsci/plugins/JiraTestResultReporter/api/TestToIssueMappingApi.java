@@ -2,18 +2,30 @@ package org.jenkinsci.plugins.JiraTestResultReporter.api;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import hudson.matrix.MatrixProject;
 import hudson.model.Api;
+import hudson.model.Item;
 import hudson.model.Job;
 import jenkins.model.Jenkins;
 import org.jenkinsci.plugins.JiraTestResultReporter.TestToIssueMapping;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by tuicu on 12/08/16.
@@ -23,6 +35,8 @@ public class TestToIssueMappingApi extends Api {
             .disableHtmlEscaping()
             .setPrettyPrinting()
             .create();
+    private static final String LOOKUP_FORMAT_ERROR =
+            "The body must be a json array of {\"job\", \"testId\"} objects";
 
     public Api getApi() {
         return this;
@@ -38,29 +52,16 @@ public class TestToIssueMappingApi extends Api {
         JsonElement result;
 
         if(jobName == null) {
-            rsp.getWriter().write("You need to set the \"job\" parameter");
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "You need to set the \"job\" parameter");
             return;
         }
 
-        //sub job of a matrix project
-        if(jobName.contains("/")) {
-            String matrixJobName = jobName.split("/")[0];
-            String matrixSubJobName = jobName.split("/")[1];
-            MatrixProject matrixProject = (MatrixProject) Jenkins.getActiveInstance().getItem(matrixJobName);
-            if(matrixProject == null) {
-                rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
-                return;
-            }
-            result = TestToIssueMapping.getInstance().getMap(matrixProject, matrixSubJobName);
-        // top level job (either matrix, freestyle or maven
-        } else {
-            Job job = (Job) Jenkins.getActiveInstance().getItem(jobName);
-            if (job == null) {
-                rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
-                return;
-            }
-            result = TestToIssueMapping.getInstance().getMap(job);
+        Job job = getJob(jobName);
+        if (job == null) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        result = TestToIssueMapping.getInstance().getMap(job);
 
         if(result != null) {
             rsp.setContentType("application/json");
@@ -69,4 +70,240 @@ public class TestToIssueMappingApi extends Api {
             rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
         }
     }
+
+    /**
+     * Returns the links added and removed for a job since a given sequence number. Parameters: "job" (for matrix
+     * projects the sub job must be specified), "epoch" and "since" as returned by the previous call. If they are
+     * missing, or the client is too far behind, the whole map is returned, with "full" set to true.
+     * @param req request
+     * @param rsp response
+     * @throws IOException error
+     * @throws ServletException error
+     */
+    public void doChanges(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+        Job job = getSingleJob(req, rsp);
+        if(job == null) {
+            return;
+        }
+
+        long epoch;
+        long since;
+        try {
+            epoch = req.getParameter("epoch") != null ? Long.parseLong(req.getParameter("epoch")) : -1;
+            since = req.getParameter("since") != null ? Long.parseLong(req.getParameter("since")) : -1;
+        } catch (NumberFormatException e) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid \"epoch\" or \"since\" parameter");
+            return;
+        }
+
+        JsonObject result = TestToIssueMapping.getInstance().getChanges(job, epoch, since);
+        rsp.setContentType("application/json");
+        rsp.getWriter().write(GSON.toJson(result));
+    }
+
+    /**
+     * Looks up the issue keys for a list of tests, possibly from different jobs, in a single call. The body of the
+     * request is a json array of objects with the "job" and "testId" properties. The response has the same format,
+     * with the "issueKey" property added for the tests that have an issue linked.
+     * @param req request
+     * @param rsp response
+     * @throws IOException error
+     * @throws ServletException error
+     */
+    @RequirePOST
+    public void doLookup(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+        List<String[]> tests;
+        try {
+            tests = parseLookup(req.getReader());
+        } catch (JsonParseException e) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        //group the tests by job, so that each job map is looked up only once
+        Map<String, List<String>> testsByJob = new LinkedHashMap<>();
+        for(String[] test : tests) {
+            List<String> testIds = testsByJob.get(test[0]);
+            if(testIds == null) {
+                testIds = new ArrayList<>();
+                testsByJob.put(test[0], testIds);
+            }
+            testIds.add(test[1]);
+        }
+
+        Map<String, Map<String, String>> issueKeysByJob = new HashMap<>();
+        for(Map.Entry<String, List<String>> entry : testsByJob.entrySet()) {
+            Job job = getJob(entry.getKey());
+            if(job != null && !(job instanceof MatrixProject)) {
+                issueKeysByJob.put(entry.getKey(),
+                        TestToIssueMapping.getInstance().getTestIssueKeys(job, entry.getValue()));
+            }
+        }
+
+        rsp.setContentType("application/json");
+        rsp.getWriter().write(GSON.toJson(toLookupResult(tests, issueKeysByJob)));
+    }
+
+    /**
+     * Parses the body of a lookup request
+     * @param in json array of objects with the "job" and "testId" string properties
+     * @return list of {job, testId} pairs, in the order of the request
+     * @throws JsonParseException if the body doesn't have the expected format
+     */
+    static List<String[]> parseLookup(Reader in) {
+        JsonElement body;
+        try {
+            body = new JsonParser().parse(in);
+        } catch (JsonParseException e) {
+            throw new JsonParseException(LOOKUP_FORMAT_ERROR, e);
+        }
+        if(!body.isJsonArray()) {
+            throw new JsonParseException(LOOKUP_FORMAT_ERROR);
+        }
+
+        List<String[]> tests = new ArrayList<>();
+        for(JsonElement element : body.getAsJsonArray()) {
+            String jobName = element.isJsonObject() ? getString(element.getAsJsonObject(), "job") : null;
+            String testId = element.isJsonObject() ? getString(element.getAsJsonObject(), "testId") : null;
+            if(jobName == null || testId == null) {
+                throw new JsonParseException("Each entry needs the \"job\" and \"testId\" string properties");
+            }
+            tests.add(new String[] {jobName, testId});
+        }
+        return tests;
+    }
+
+    /**
+     * Builds the response of a lookup request
+     * @param tests the {job, testId} pairs of the request
+     * @param issueKeysByJob map from job names to the issue keys of their tests
+     * @return json array with the tests of the request, with the "issueKey" property added for the linked ones
+     */
+    static JsonArray toLookupResult(List<String[]> tests, Map<String, Map<String, String>> issueKeysByJob) {
+        JsonArray result = new JsonArray();
+        for(String[] test : tests) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("job", test[0]);
+            entry.addProperty("testId", test[1]);
+            Map<String, String> issueKeys = issueKeysByJob.get(test[0]);
+            if(issueKeys != null && issueKeys.containsKey(test[1])) {
+                entry.addProperty("issueKey", issueKeys.get(test[1]));
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    private static String getString(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        if(element == null || !element.isJsonPrimitive()) {
+            return null;
+        }
+        return element.getAsString();
+    }
+
+    /**
+     * Streams the whole map of a job, in the same format expected by {@link #doImport}. Parameters: "job" (for matrix
+     * projects the sub job must be specified).
+     * @param req request
+     * @param rsp response
+     * @throws IOException error
+     * @throws ServletException error
+     */
+    public void doExport(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+        Job job = getSingleJob(req, rsp);
+        if(job == null) {
+            return;
+        }
+
+        rsp.setContentType("application/json");
+        TestToIssueMapping.getInstance().exportMap(job, rsp.getWriter());
+    }
+
+    /**
+     * Links many tests to issues at once, saving the map a single time. The body of the request is a json object
+     * mapping test ids to issue keys. Parameters: "job" (for matrix projects the sub job must be specified) and
+     * "mode", either "merge" (default) or "replace" to drop the existing links that are not in the body.
+     * @param req request
+     * @param rsp response
+     * @throws IOException error
+     * @throws ServletException error
+     */
+    @RequirePOST
+    public void doImport(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+        Job job = getSingleJob(req, rsp);
+        if(job == null) {
+            return;
+        }
+        job.checkPermission(Item.CONFIGURE);
+
+        String mode = req.getParameter("mode");
+        if(mode != null && !mode.equals("merge") && !mode.equals("replace")) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "The \"mode\" parameter must be \"merge\" or \"replace\"");
+            return;
+        }
+
+        int imported;
+        try {
+            imported = TestToIssueMapping.getInstance().importMappings(job, req.getReader(), "replace".equals(mode));
+        } catch (IOException e) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("imported", imported);
+        rsp.setContentType("application/json");
+        rsp.getWriter().write(GSON.toJson(result));
+    }
+
+    /**
+     * Finds the job from the "job" parameter, sending an error if it is missing, it doesn't exist or it is a matrix
+     * project without the sub job specified
+     * @param req request
+     * @param rsp response
+     * @return the job, or null if an error was sent
+     * @throws IOException error
+     */
+    private Job getSingleJob(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        String jobName = req.getParameter("job");
+        if(jobName == null) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "You need to set the \"job\" parameter");
+            return null;
+        }
+
+        Job job = getJob(jobName);
+        if(job == null) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        if(job instanceof MatrixProject) {
+            rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, "You need to specify the sub job of the matrix project");
+            return null;
+        }
+        return job;
+    }
+
+    /**
+     * Finds a job given its full name, which includes the folders, or the full name of the matrix project and the sub
+     * job, separated by "/"
+     * @param jobName the job name
+     * @return the job, or null if it doesn't exist
+     */
+    private Job getJob(String jobName) {
+        Jenkins jenkins = Jenkins.getActiveInstance();
+        Item item = jenkins.getItemByFullName(jobName);
+        if(item instanceof Job) {
+            return (Job) item;
+        }
+
+        //the names of the matrix sub jobs can contain "/" themselves, so every split is tried
+        for(int i = jobName.indexOf('/'); i != -1; i = jobName.indexOf('/', i + 1)) {
+            Item matrixProject = jenkins.getItemByFullName(jobName.substring(0, i));
+            if(matrixProject instanceof MatrixProject) {
+                return ((MatrixProject) matrixProject).getItem(jobName.substring(i + 1));
+            }
+        }
+        return null;
+    }
 }
@@ -20,8 +20,10 @@ import hudson.EnvVars;
 import hudson.ExtensionPoint;
 import hudson.model.AbstractDescribableImpl;
 import hudson.tasks.test.TestResult;
+import org.jenkinsci.plugins.JiraTestResultReporter.ExpansionContext;
 
 import java.io.Serializable;
+import java.util.Set;
 
 /**
  * Created by tuicu.
@@ -31,5 +33,46 @@ public abstract class AbstractFields  extends AbstractDescribableImpl<AbstractFi
         implements ExtensionPoint, Serializable {
     public static final long serialVersionUID = 6634175180307435394L;
     public abstract FieldInput getFieldInput(TestResult test, EnvVars envVars);
+
+    /**
+     * Getter for the FieldInput object, reusing the variables already expanded for the same test. Fields that
+     * expand variables should override it, the others don't need to.
+     * @param context the expansion context of the test
+     * @return FieldInput
+     */
+    public FieldInput getFieldInput(ExpansionContext context) {
+        return getFieldInput(context.getTest(), context.getEnvVars());
+    }
+
+    /**
+     * Getter for the field key, used for letting the job configuration override the global templates. The fields of
+     * this plugin override it, for the others the key is taken from a FieldInput built without a test.
+     * @return the field key, null if it is not known
+     */
+    public String getFieldKey() {
+        try {
+            FieldInput fieldInput = getFieldInput(null, null);
+            return fieldInput != null ? fieldInput.getId() : null;
+        } catch (RuntimeException e) {
+            //the field needs a test for building its value
+            return null;
+        }
+    }
+
+    /**
+     * Whether the FieldInput is the same for every test, in which case it is built only once per job configuration
+     * @return true if the value does not depend on the test or on the build
+     */
+    public boolean isConstant() {
+        return false;
+    }
+
+    /**
+     * Adds the names of the variables used by this field to a set. Fields that expand variables should override it.
+     * @param variables the set of variable names
+     */
+    public void collectVariables(Set<String> variables) {
+    }
+
     public abstract Object readResolve();
 }
@@ -15,9 +15,6 @@
  */
 package org.jenkinsci.plugins.JiraTestResultReporter.config;
 
-import com.atlassian.jira.rest.client.api.IdentifiableEntity;
-import com.atlassian.jira.rest.client.api.NamedEntity;
-import com.atlassian.jira.rest.client.api.domain.CustomFieldOption;
 import com.atlassian.jira.rest.client.api.domain.input.ComplexIssueInputFieldValue;
 import com.atlassian.jira.rest.client.api.domain.input.FieldInput;
 import hudson.EnvVars;
@@ -30,8 +27,8 @@ import org.jenkinsci.plugins.JiraTestResultReporter.JiraTestDataPublisher;
 import org.jenkinsci.plugins.JiraTestResultReporter.JiraUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.Stapler;
 
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -101,6 +98,11 @@ public class SelectableArrayFields extends AbstractFields {
         return fieldInput;
     }
 
+    @Override
+    public boolean isConstant() {
+        return true;
+    }
+
     /**
      * Descriptor, required for the hetero-list
      */
@@ -130,7 +132,8 @@ public class SelectableArrayFields extends AbstractFields {
         }
 
         /**
-         * Method for filling the selectable with the allowed values
+         * Method for filling the selectable with the allowed values. The optional prefix request parameter keeps
+         * only the values whose name starts with it
          * @param projectKey projectKey
          * @param issueType issueType
          * @param fieldKey fieldKey
@@ -139,35 +142,14 @@ public class SelectableArrayFields extends AbstractFields {
         public ListBoxModel doFillValueItems(@QueryParameter @RelativePath("../..") String projectKey,
                                              @QueryParameter @RelativePath("../..") String issueType,
                                              @QueryParameter @RelativePath("..") String fieldKey) {
-
-            ListBoxModel listBox = new ListBoxModel();
             JiraTestDataPublisher.JiraTestDataPublisherDescriptor jiraDescriptor = JiraUtils.getJiraDescriptor();
             try {
-                Iterable<Object> values = jiraDescriptor.getCacheEntry(projectKey, issueType).getFieldInfoMap().get(fieldKey).getAllowedValues();
-                for (Object o : values) {
-                    if(o instanceof CustomFieldOption) {
-                        CustomFieldOption option = (CustomFieldOption) o;
-                        listBox.add(option.getValue(), option.getId().toString());
-                    } else if (o instanceof IdentifiableEntity && o instanceof NamedEntity) {
-                        listBox.add(((NamedEntity) o).getName(), ((IdentifiableEntity<Long>) o).getId().toString());
-                    //work-around for Components and Fix Versions
-                    // even though they have ids, for some reason they don't implement IdentifiableEntity
-                    // so I'm invoking the getter for the id using reflection
-                    } else if (o instanceof  NamedEntity) {
-                        try {
-                            Method m = o.getClass().getMethod("getId");
-                            Object id = (Long) m.invoke(o, null);
-                            if(id != null) {
-                                listBox.add(((NamedEntity) o).getName(), id.toString());
-                            }
-                        } catch (Exception e) {
-                        }
-                    }
-                }
-                return listBox;
+                //optional filter, not a @QueryParameter so that it is not treated as a field the values depend on
+                String prefix = Stapler.getCurrentRequest() != null ? Stapler.getCurrentRequest().getParameter("prefix") : null;
+                return jiraDescriptor.getCacheEntry(projectKey, issueType).getAllowedValues(fieldKey, prefix);
             }
             catch (NullPointerException e) {
-                return listBox;
+                return new ListBoxModel();
             }
         }
     }
@@ -22,6 +22,7 @@ import hudson.RelativePath;
 import hudson.model.Descriptor;
 import hudson.tasks.test.TestResult;
 import hudson.util.ListBoxModel;
+import org.jenkinsci.plugins.JiraTestResultReporter.ExpansionContext;
 import org.jenkinsci.plugins.JiraTestResultReporter.JiraTestDataPublisher;
 import org.jenkinsci.plugins.JiraTestResultReporter.JiraUtils;
 import org.jenkinsci.plugins.JiraTestResultReporter.VariableExpander;
@@ -30,6 +31,7 @@ import org.kohsuke.stapler.QueryParameter;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Created by tuicu.
@@ -78,14 +80,31 @@ public class StringArrayFields extends AbstractFields {
      */
     @Override
     public FieldInput getFieldInput(TestResult test, EnvVars envVars) {
+        return getFieldInput(new ExpansionContext(test, envVars));
+    }
+
+    /**
+     * Getter for the FieldInput object
+     * @param context the expansion context of the test
+     * @return FieldInput
+     */
+    @Override
+    public FieldInput getFieldInput(ExpansionContext context) {
         List<String> stringList = new ArrayList<>();
         for(Entry v : values) {
-            stringList.add(VariableExpander.expandVariables(test, envVars, v.getValue()));
+            stringList.add(VariableExpander.expandVariables(context, v.getValue()));
         }
         FieldInput fieldInput = new FieldInput(fieldKey, stringList);
         return fieldInput;
     }
 
+    @Override
+    public void collectVariables(Set<String> variables) {
+        for(Entry v : values) {
+            VariableExpander.collectVariables(v.getValue(), variables);
+        }
+    }
+
 
     @Override
     public Object readResolve() {
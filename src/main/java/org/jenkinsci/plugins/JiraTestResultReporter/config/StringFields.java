@@ -22,12 +22,15 @@ import hudson.RelativePath;
 import hudson.model.Descriptor;
 import hudson.tasks.test.TestResult;
 import hudson.util.ListBoxModel;
+import org.jenkinsci.plugins.JiraTestResultReporter.ExpansionContext;
 import org.jenkinsci.plugins.JiraTestResultReporter.JiraTestDataPublisher.JiraTestDataPublisherDescriptor;
 import org.jenkinsci.plugins.JiraTestResultReporter.JiraUtils;
 import org.jenkinsci.plugins.JiraTestResultReporter.VariableExpander;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 
+import java.util.Set;
+
 /**
  * Created by tuicu.
  * Class for fields that accept single string values
@@ -81,9 +84,24 @@ public class StringFields extends AbstractFields {
      */
     @Override
     public FieldInput getFieldInput(TestResult test, EnvVars envVars) {
-        FieldInput fieldInput = new FieldInput(fieldKey, VariableExpander.expandVariables(test, envVars,value));
+        return getFieldInput(new ExpansionContext(test, envVars));
+    }
+
+    /**
+     * Getter for the FieldInput object
+     * @param context the expansion context of the test
+     * @return FieldInput
+     */
+    @Override
+    public FieldInput getFieldInput(ExpansionContext context) {
+        FieldInput fieldInput = new FieldInput(fieldKey, VariableExpander.expandVariables(context, value));
         return fieldInput;
     }
+
+    @Override
+    public void collectVariables(Set<String> variables) {
+        VariableExpander.collectVariables(value, variables);
+    }
     
     @Override
     public Object readResolve() {
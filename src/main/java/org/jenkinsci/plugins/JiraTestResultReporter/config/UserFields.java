@@ -25,7 +25,6 @@ import org.kohsuke.stapler.QueryParameter;
 public class UserFields extends AbstractFields {
     private final String fieldKey;
     private final String value;
-    private transient User user;
 
     /**
      * Constructor
@@ -36,7 +35,6 @@ public class UserFields extends AbstractFields {
     public UserFields(String fieldKey, String value) {
         this.fieldKey = fieldKey;
         this.value = value;
-        this.user = JiraUtils.getJiraDescriptor().getRestClient().getUserClient().getUser(value).claim();
     }
 
     /**
@@ -47,13 +45,15 @@ public class UserFields extends AbstractFields {
      */
     @Override
     public FieldInput getFieldInput(TestResult test, EnvVars envVars) {
-        return new FieldInput(fieldKey, ComplexIssueInputFieldValue.with("name", user.getName()));
+        //the user is resolved only for getting the exact name, the configured one is good enough if Jira is not reachable.
+        //It is not a constant field, so that it is looked up in the user cache every time an issue is created
+        User user = JiraUtils.getJiraDescriptor().getUser(value);
+        return new FieldInput(fieldKey, ComplexIssueInputFieldValue.with("name", user != null ? user.getName() : value));
     }
 
-
     @Override
     public Object readResolve() {
-        this.user = JiraUtils.getJiraDescriptor().getRestClient().getUserClient().getUser(value).claim();
+        //the user is resolved when it is first needed, so loading the job configurations doesn't wait for Jira
         return this;
     }
 
@@ -103,9 +103,14 @@ public class UserFields extends AbstractFields {
                 return FormValidation.error("You need to specify a user");
             }
 
+            if (JiraUtils.getJiraDescriptor().getUser(value) != null) {
+                return FormValidation.ok();
+            }
+
+            //ask again, for the error message
             UserRestClient userRestClient = JiraUtils.getJiraDescriptor().getRestClient().getUserClient();
             try {
-                User user = userRestClient.getUser(value).claim();
+                userRestClient.getUser(value).claim();
                 return FormValidation.ok();
             } catch (RestClientException e) {
                 return FormValidation.error(JiraUtils.getErrorMessage(e, "\n"));
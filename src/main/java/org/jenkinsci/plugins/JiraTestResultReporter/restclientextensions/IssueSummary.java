@@ -0,0 +1,87 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The few parts of an issue used by the plugin: the status, the summary and the available transitions
+ */
+public class IssueSummary {
+    /**
+     * A transition available for the issue
+     */
+    public static class Transition {
+        private final String id;
+        private final String name;
+
+        public Transition(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public String getId() { return id; }
+
+        public String getName() { return name; }
+    }
+
+    private final String key;
+    private final String summary;
+    private final String status;
+    private final String statusColor;
+    private final String statusCategory;
+    private final List<Transition> transitions;
+
+    /**
+     * Constructor
+     * @param key the issue key.
+     * @param summary the summary.
+     * @param status the status name.
+     * @param statusColor the colour of the status category, can be null.
+     * @param statusCategory the key of the status category, can be null.
+     * @param transitions the available transitions, empty if they were not requested.
+     */
+    public IssueSummary(String key, String summary, String status, String statusColor, String statusCategory,
+                        List<Transition> transitions) {
+        this.key = key;
+        this.summary = summary;
+        this.status = status;
+        this.statusColor = statusColor;
+        this.statusCategory = statusCategory;
+        this.transitions = Collections.unmodifiableList(transitions);
+    }
+
+    public String getKey() { return key; }
+
+    public String getSummary() { return summary; }
+
+    public String getStatus() { return status; }
+
+    /**
+     * Getter for the colour of the status category
+     * @return the color name, null if the server doesn't have status categories
+     */
+    public String getStatusColor() { return statusColor; }
+
+    /**
+     * Getter for the key of the status category: "new", "indeterminate" or "done"
+     * @return the category key, null if the server doesn't have status categories
+     */
+    public String getStatusCategory() { return statusCategory; }
+
+    public List<Transition> getTransitions() { return transitions; }
+}
@@ -0,0 +1,148 @@
+/**
+ Copyright 2015 Andrei Tuicu
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser for the issues fetched with {@link JiraRestClientExtension#getIssueSummary(String, boolean)}. The response
+ * is read as a stream and only the parts kept in {@link IssueSummary} are decoded, everything else is skipped.
+ */
+public class IssueSummaryJsonParser {
+    private String key;
+    private String summary;
+    private String status;
+    private String statusColor;
+    private String statusCategory;
+    private final List<IssueSummary.Transition> transitions = new ArrayList<>();
+
+    /**
+     * Parses an issue, a parser instance must be used only once
+     * @param in the response body
+     * @return the issue summary
+     * @throws IOException if the response cannot be read or is not valid json
+     */
+    public IssueSummary parse(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("key")) {
+                    key = nextString(reader);
+                } else if (name.equals("fields") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    parseFields(reader);
+                } else if (name.equals("transitions") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    parseTransitions(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+        return new IssueSummary(key, summary, status, statusColor, statusCategory, transitions);
+    }
+
+    private void parseFields(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("summary")) {
+                summary = nextString(reader);
+            } else if (name.equals("status") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                parseStatus(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void parseStatus(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("name")) {
+                status = nextString(reader);
+            } else if (name.equals("statusCategory") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String property = reader.nextName();
+                    if (property.equals("colorName")) {
+                        statusColor = nextString(reader);
+                    } else if (property.equals("key")) {
+                        statusCategory = nextString(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void parseTransitions(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            String id = null;
+            String name = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String property = reader.nextName();
+                if (property.equals("id")) {
+                    id = nextString(reader);
+                } else if (property.equals("name")) {
+                    name = nextString(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            transitions.add(new IssueSummary.Transition(id, name));
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Reads a string, or a number as a string
+     * @param reader the reader
+     * @return the value, null for json null and for objects or arrays, which are skipped
+     * @throws IOException error
+     */
+    private static String nextString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+}
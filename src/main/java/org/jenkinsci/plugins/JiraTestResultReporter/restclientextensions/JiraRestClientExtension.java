@@ -16,12 +16,17 @@
 package org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions;
 
 import com.atlassian.httpclient.api.HttpClient;
+import com.atlassian.httpclient.api.Response;
 import com.atlassian.jira.rest.client.internal.async.AbstractAsynchronousRestClient;
 import com.atlassian.jira.rest.client.internal.json.GenericJsonArrayParser;
 import com.atlassian.util.concurrent.Promise;
+import org.codehaus.jettison.json.JSONException;
 
 import javax.ws.rs.core.UriBuilder;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Created by tuicu.
@@ -30,12 +35,48 @@ import java.net.URI;
 public class JiraRestClientExtension extends AbstractAsynchronousRestClient {
 
     private final URI baseUri;
+    private final HttpClient client;
 
     public JiraRestClientExtension(URI serverUri, HttpClient client) {
         super(client);
+        this.client = client;
         this.baseUri = UriBuilder.fromUri(serverUri).path("/rest/api/latest").build(new Object[0]);
     }
 
+    /**
+     * Fetches only the status and the summary of an issue, and optionally its transitions, instead of the whole
+     * issue with all its fields, comments and attachments
+     * @param issueKey the issue key
+     * @param withTransitions true to fetch the available transitions as well
+     * @return the issue summary
+     */
+    public Promise<IssueSummary> getIssueSummary(String issueKey, boolean withTransitions) {
+        UriBuilder uriBuilder = UriBuilder.fromUri(this.baseUri);
+        uriBuilder.path("issue").path(issueKey).queryParam("fields", "status,summary");
+        if (withTransitions) {
+            uriBuilder.queryParam("expand", "transitions");
+        }
+        return callAndParse(client.newRequest(uriBuilder.build(new Object[0])).setAccept("application/json").get(),
+                new ResponseHandler<IssueSummary>() {
+                    @Override
+                    public IssueSummary handle(Response response) throws JSONException, IOException {
+                        return new IssueSummaryJsonParser().parse(
+                                new InputStreamReader(response.getEntityStream(), StandardCharsets.UTF_8));
+                    }
+                });
+    }
+
+    /**
+     * Getter for the URI used for transitioning an issue
+     * @param issueKey the issue key
+     * @return the transitions URI
+     */
+    public URI getTransitionsUri(String issueKey) {
+        UriBuilder uriBuilder = UriBuilder.fromUri(this.baseUri);
+        uriBuilder.path("issue").path(issueKey).path("transitions");
+        return uriBuilder.build(new Object[0]);
+    }
+
     public Promise<Iterable<FullStatus>> getStatuses() {
         final UriBuilder uriBuilder = UriBuilder.fromUri(this.baseUri);
         uriBuilder.path("status");
@@ -0,0 +1,308 @@
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+
+public class ExpiringCacheTest
+{
+    private static class TestCache extends ExpiringCache<String, String>
+    {
+        private final AtomicInteger loads = new AtomicInteger();
+        private volatile long now = 0;
+        private volatile boolean failing = false;
+
+        TestCache(int maxSize)
+        {
+            super("test cache", maxSize, 100, 50, 10);
+        }
+
+        @Override
+        protected String load(String key) throws Exception
+        {
+            if (failing) {
+                throw new Exception("failed to load " + key);
+            }
+            return key + loads.incrementAndGet();
+        }
+
+        @Override
+        protected Executor getRefreshExecutor()
+        {
+            return new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            };
+        }
+
+        @Override
+        protected long now()
+        {
+            return now;
+        }
+    }
+
+    @Test
+    public void testHitsAndMisses()
+    {
+        TestCache cache = new TestCache(10);
+        assertEquals("a1", cache.get("a"));
+        assertEquals("a1", cache.get("a"));
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+        assertEquals(1, cache.getStats().getLoads());
+    }
+
+    @Test
+    public void testExpiredValuesAreReloaded()
+    {
+        TestCache cache = new TestCache(10);
+        cache.get("a");
+        cache.now = 100;
+        assertNull(cache.getIfPresent("a"));
+        assertEquals("a2", cache.get("a"));
+    }
+
+    @Test
+    public void testRefreshAhead()
+    {
+        TestCache cache = new TestCache(10);
+        cache.get("a");
+        cache.now = 60;
+        //the old value is returned, while the new one is loaded in the background
+        assertEquals("a1", cache.get("a"));
+        assertEquals("a2", cache.get("a"));
+    }
+
+    @Test
+    public void testFailedRefreshKeepsTheOldValue()
+    {
+        TestCache cache = new TestCache(10);
+        cache.get("a");
+        cache.now = 60;
+        cache.failing = true;
+        assertEquals("a1", cache.get("a"));
+        assertEquals("a1", cache.get("a"));
+        assertEquals(1, cache.getStats().getFailedLoads());
+    }
+
+    @Test
+    public void testFailedLoadsAreCachedNegatively()
+    {
+        TestCache cache = new TestCache(10);
+        cache.failing = true;
+        assertNull(cache.get("a"));
+        cache.failing = false;
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getStats().getLoads());
+
+        cache.now = 10;
+        assertEquals("a1", cache.get("a"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted()
+    {
+        TestCache cache = new TestCache(2);
+        cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c");
+        assertNotNull(cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("b"));
+        assertEquals(2, cache.getStats().getSize());
+    }
+
+    @Test
+    public void testStaleValuesAreRefreshedOnFirstUse()
+    {
+        TestCache cache = new TestCache(10);
+        cache.putStale("a", "saved");
+        assertEquals("saved", cache.get("a"));
+        assertEquals("a1", cache.get("a"));
+        assertEquals(0, cache.getStats().getMisses());
+    }
+
+    @Test
+    public void testGetCachedNeverLoads()
+    {
+        TestCache cache = new TestCache(10);
+        assertNull(cache.getCached("a"));
+        assertFalse(cache.isCached("a"));
+        assertEquals(0, cache.getStats().getLoads());
+
+        cache.get("a");
+        cache.now = 60;
+        //the cached value is returned and refreshed in the background, like for get
+        assertEquals("a1", cache.getCached("a"));
+        assertEquals("a2", cache.getCached("a"));
+        assertTrue(cache.isCached("a"));
+    }
+
+    @Test
+    public void testInvalidate()
+    {
+        TestCache cache = new TestCache(10);
+        cache.get("a");
+        cache.invalidate("a");
+        assertEquals("a2", cache.get("a"));
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneLoad() throws Exception
+    {
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch finishLoad = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final ExpiringCache<String, String> cache = new ExpiringCache<String, String>("test cache", 10, 100, 50, 10) {
+            @Override
+            protected String load(String key) throws Exception
+            {
+                loads.incrementAndGet();
+                loadStarted.countDown();
+                finishLoad.await(5, TimeUnit.SECONDS);
+                return key;
+            }
+        };
+
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cache.get("a");
+            }
+        });
+        first.start();
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        Thread second = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cache.get("a");
+            }
+        });
+        second.start();
+        Thread.sleep(100);
+        finishLoad.countDown();
+        first.join(5000);
+        second.join(5000);
+
+        assertEquals(1, loads.get());
+        assertEquals("a", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testInvalidateDuringLoad() throws Exception
+    {
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch finishLoad = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final ExpiringCache<String, String> cache = new ExpiringCache<String, String>("test cache", 10, 100, 50, 10) {
+            @Override
+            protected String load(String key) throws Exception
+            {
+                if (loads.incrementAndGet() == 1) {
+                    loadStarted.countDown();
+                    finishLoad.await(5, TimeUnit.SECONDS);
+                    return "old";
+                }
+                return "new";
+            }
+        };
+
+        final String[] loaded = new String[1];
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loaded[0] = cache.get("a");
+            }
+        });
+        first.start();
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        cache.invalidate("a");
+        //a miss after the invalidation doesn't wait for the old load
+        assertEquals("new", cache.get("a"));
+        finishLoad.countDown();
+        first.join(5000);
+
+        //the old load returns the value that replaced it
+        assertEquals("new", loaded[0]);
+        assertEquals("new", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testPutDuringLoad() throws Exception
+    {
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch finishLoad = new CountDownLatch(1);
+        final ExpiringCache<String, String> cache = new ExpiringCache<String, String>("test cache", 10, 100, 50, 10) {
+            @Override
+            protected String load(String key) throws Exception
+            {
+                loadStarted.countDown();
+                finishLoad.await(5, TimeUnit.SECONDS);
+                return "old";
+            }
+        };
+
+        final String[] loaded = new String[1];
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loaded[0] = cache.get("a");
+            }
+        });
+        first.start();
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        cache.put("a", "updated");
+        finishLoad.countDown();
+        first.join(5000);
+
+        assertEquals("updated", loaded[0]);
+        assertEquals("updated", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testRejectedRefreshIsRetried()
+    {
+        final AtomicInteger loads = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        ExpiringCache<String, String> cache = new ExpiringCache<String, String>("test cache", 10, 100000, 0, 10) {
+            @Override
+            protected String load(String key) throws Exception
+            {
+                return key + loads.incrementAndGet();
+            }
+
+            @Override
+            protected Executor getRefreshExecutor()
+            {
+                return new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        if (rejected.incrementAndGet() == 1) {
+                            throw new RejectedExecutionException();
+                        }
+                        command.run();
+                    }
+                };
+            }
+        };
+
+        cache.get("a");
+        assertEquals("a1", cache.get("a"));
+        assertEquals("a1", cache.get("a"));
+        assertEquals(2, rejected.get());
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,106 @@
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.atlassian.jira.rest.client.api.domain.input.FieldInput;
+import com.atlassian.jira.rest.client.api.domain.input.IssueInput;
+import hudson.EnvVars;
+import hudson.tasks.test.TestResult;
+import org.jenkinsci.plugins.JiraTestResultReporter.config.AbstractFields;
+import org.jenkinsci.plugins.JiraTestResultReporter.config.SelectableFields;
+import org.jenkinsci.plugins.JiraTestResultReporter.config.StringFields;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class IssueTemplateTest
+{
+    private final List<AbstractFields> templates = Arrays.<AbstractFields>asList(
+            new StringFields("summary", "${JOB_NAME} failed"),
+            new StringFields("description", "build ${BUILD_NUMBER}"));
+
+    @Test
+    public void testConfigsOverrideTemplates()
+    {
+        List<AbstractFields> configs = Arrays.<AbstractFields>asList(new StringFields("summary", "custom summary"));
+        IssueTemplate template = IssueTemplate.compile("TST", 1L, templates, configs);
+        assertEquals(2, template.getVariableFields().size());
+
+        IssueInput issueInput = template.createIssueInput(
+                new ExpansionContext(mock(TestResult.class), new EnvVars("BUILD_NUMBER", "42")));
+        assertEquals("custom summary", issueInput.getField("summary").getValue());
+        assertEquals("build 42", issueInput.getField("description").getValue());
+    }
+
+    @Test
+    public void testConstantFieldsAreBuiltOnce()
+    {
+        SelectableFields priority = new SelectableFields("priority", "3");
+        IssueTemplate template = IssueTemplate.compile("TST", 1L, templates,
+                Arrays.<AbstractFields>asList(priority));
+        assertEquals(1, template.getConstantFields().size());
+        assertSame(priority.getFieldInput(null, null), template.getConstantFields().get(0));
+
+        IssueInput issueInput = template.createIssueInput(
+                new ExpansionContext(mock(TestResult.class), new EnvVars("JOB_NAME", "job")));
+        assertEquals("job failed", issueInput.getField("summary").getValue());
+        assertNotNull(issueInput.getField("priority"));
+    }
+
+    @Test
+    public void testNoConfigs()
+    {
+        IssueTemplate template = IssueTemplate.compile("TST", 1L, templates, null);
+        assertEquals(2, template.getVariableFields().size());
+        assertTrue(template.getConstantFields().isEmpty());
+    }
+
+    /**
+     * A field from another plugin, written before getFieldKey existed
+     */
+    private static class LegacyFields extends AbstractFields
+    {
+        private final String fieldKey;
+        private final String value;
+
+        LegacyFields(String fieldKey, String value)
+        {
+            this.fieldKey = fieldKey;
+            this.value = value;
+        }
+
+        @Override
+        public FieldInput getFieldInput(TestResult test, EnvVars envVars)
+        {
+            return new FieldInput(fieldKey, value != null ? value : test.getDisplayName());
+        }
+
+        @Override
+        public Object readResolve()
+        {
+            return this;
+        }
+    }
+
+    @Test
+    public void testFieldKeyOfFieldsWithoutOverride()
+    {
+        assertEquals("summary", new LegacyFields("summary", "legacy summary").getFieldKey());
+        //the value needs the test
+        assertNull(new LegacyFields("environment", null).getFieldKey());
+
+        IssueTemplate template = IssueTemplate.compile("TST", 1L, templates, Arrays.<AbstractFields>asList(
+                new LegacyFields("summary", "legacy summary"), new LegacyFields("environment", null)));
+        assertEquals(3, template.getVariableFields().size());
+
+        TestResult test = mock(TestResult.class);
+        when(test.getDisplayName()).thenReturn("testBar");
+        IssueInput issueInput = template.createIssueInput(new ExpansionContext(test, new EnvVars()));
+        assertEquals("legacy summary", issueInput.getField("summary").getValue());
+        assertEquals("testBar", issueInput.getField("environment").getValue());
+    }
+}
@@ -0,0 +1,38 @@
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+
+public class JiraTestActionTest
+{
+    private static final Set<String> LINKED = new HashSet<>(Arrays.asList("TST-1", "TST-2", "TST-3"));
+
+    @Test
+    public void testOnlyLinkedIssueKeysAreKept()
+    {
+        assertEquals(Arrays.asList("TST-1", "TST-3"),
+                new ArrayList<>(JiraTestAction.getLinkedIssueKeys("TST-1,OTHER-7,TST-3", LINKED, 10)));
+    }
+
+    @Test
+    public void testDuplicatedIssueKeys()
+    {
+        assertEquals(Collections.singletonList("TST-2"),
+                new ArrayList<>(JiraTestAction.getLinkedIssueKeys("TST-2,TST-2,TST-2", LINKED, 10)));
+    }
+
+    @Test
+    public void testIssueKeysAreCapped()
+    {
+        assertEquals(Arrays.asList("TST-1", "TST-2"),
+                new ArrayList<>(JiraTestAction.getLinkedIssueKeys("TST-1,TST-2,TST-3", LINKED, 2)));
+    }
+}
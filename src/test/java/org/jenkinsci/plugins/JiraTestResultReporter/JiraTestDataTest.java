@@ -0,0 +1,32 @@
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import hudson.EnvVars;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+
+public class JiraTestDataTest
+{
+    @Test
+    public void testOnlyUsedVariablesAreKept()
+    {
+        EnvVars envVars = new EnvVars("JOB_NAME", "job", "BUILD_URL", "http://jenkins/job/job/1/", "PATH", "/usr/bin");
+        JiraTestData testData = new JiraTestData(envVars, Arrays.asList("BUILD_URL", "MISSING"));
+
+        assertEquals(2, testData.getEnvVars().size());
+        assertEquals("http://jenkins/job/job/1/", testData.getEnvVars().get("BUILD_URL"));
+        assertEquals("job", testData.getEnvVars().get("JOB_NAME"));
+        assertFalse(testData.getEnvVars().containsKey("PATH"));
+    }
+
+    @Test
+    public void testValuesAreShared()
+    {
+        JiraTestData first = new JiraTestData(new EnvVars("A", new String("value")), Arrays.asList("A"));
+        JiraTestData second = new JiraTestData(new EnvVars("A", new String("value")), Arrays.asList("A"));
+        assertSame(first.getEnvVars().get("A"), second.getEnvVars().get("A"));
+    }
+}
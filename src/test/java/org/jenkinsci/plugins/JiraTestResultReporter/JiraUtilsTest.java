@@ -135,4 +135,18 @@ public class JiraUtilsTest
         assertEquals("Start\\\\: Q4", escapeJQL);
     }
 
+    @Test
+    public void testJQLEscapeSlash()
+    {
+        String escapeJQL = JiraUtils.escapeJQL("a/b");
+        assertEquals("a\\\\/b", escapeJQL);
+    }
+
+    @Test
+    public void testJQLEscapeQuote()
+    {
+        String escapeJQL = JiraUtils.escapeJQL("expected \"a\"");
+        assertEquals("expected \\\"a\\\"", escapeJQL);
+    }
+
 }
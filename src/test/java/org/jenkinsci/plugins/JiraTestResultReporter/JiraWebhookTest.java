@@ -0,0 +1,88 @@
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.google.gson.JsonParseException;
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+
+public class JiraWebhookTest
+{
+    private static Reader payload(String name)
+    {
+        return new InputStreamReader(JiraWebhookTest.class.getResourceAsStream(name), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testParseIssueUpdated() throws Exception
+    {
+        JiraWebhookEvent event = JiraWebhookEvent.parse(payload("webhook-issue-updated.json"));
+        assertEquals(JiraWebhookEvent.Type.ISSUE_UPDATED, event.getType());
+        assertEquals("TST-256", event.getIssueKey());
+        assertEquals("In Progress", event.getStatus());
+        assertEquals("yellow", event.getStatusColor());
+        assertEquals("FooTest.testBar : expected:<1> but was:<2>", event.getSummary());
+    }
+
+    @Test
+    public void testParseIssueDeleted() throws Exception
+    {
+        JiraWebhookEvent event = JiraWebhookEvent.parse(payload("webhook-issue-deleted.json"));
+        assertEquals(JiraWebhookEvent.Type.ISSUE_DELETED, event.getType());
+        assertEquals("TST-256", event.getIssueKey());
+        assertNull(event.getStatus());
+    }
+
+    @Test
+    public void testParseOtherEvents()
+    {
+        JiraWebhookEvent event = JiraWebhookEvent.parse(new StringReader("{\"webhookEvent\": \"project_created\"}"));
+        assertEquals(JiraWebhookEvent.Type.OTHER, event.getType());
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testParseMissingIssueKey()
+    {
+        JiraWebhookEvent.parse(new StringReader("{\"webhookEvent\": \"jira:issue_updated\", \"issue\": {}}"));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testParseNotAnObject()
+    {
+        JiraWebhookEvent.parse(new StringReader("[1, 2]"));
+    }
+
+    @Test
+    public void testSecret()
+    {
+        assertTrue(JiraWebhook.isValidSecret("s3cret", "s3cret"));
+        assertFalse(JiraWebhook.isValidSecret("s3cret", "s3cre"));
+        assertFalse(JiraWebhook.isValidSecret("s3cret", "S3cret"));
+        assertFalse(JiraWebhook.isValidSecret("s3cret", null));
+    }
+
+    @Test
+    public void testUpdatedIssueIsCached() throws Exception
+    {
+        IssueStatusCache issueStatusCache = mock(IssueStatusCache.class);
+        JiraWebhook.handle(JiraWebhookEvent.parse(payload("webhook-issue-updated.json")), issueStatusCache, false);
+        verify(issueStatusCache).update(eq("TST-256"), any(IssueStatusCache.IssueStatus.class));
+    }
+
+    @Test
+    public void testDeletedIssueIsInvalidated() throws Exception
+    {
+        IssueStatusCache issueStatusCache = mock(IssueStatusCache.class);
+        JiraWebhook.handle(JiraWebhookEvent.parse(payload("webhook-issue-deleted.json")), issueStatusCache, false);
+        verify(issueStatusCache).invalidate("TST-256");
+    }
+}
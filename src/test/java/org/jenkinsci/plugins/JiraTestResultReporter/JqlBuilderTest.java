@@ -0,0 +1,84 @@
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+
+public class JqlBuilderTest
+{
+    private static final String ALPHABET = "ab1 '+-&|!(){}[]^~*?\\:";
+
+    /*
+     * The escaper that was used before, kept as a reference. It leaves the quotes as they are and escapes the slash
+     * only once, the other characters must be escaped the same way.
+     */
+    private static String referenceEscape(String jql)
+    {
+        return jql.replaceAll("'","\\'")
+                .replaceAll("\\+", "\\\\+")
+                .replaceAll("-", "\\\\-")
+                .replaceAll("&", "\\\\&")
+                .replaceAll("\\|", "\\\\|")
+                .replaceAll("!", "\\\\!")
+                .replaceAll("\\(", "\\\\(")
+                .replaceAll("\\)", "\\\\)")
+                .replaceAll("\\{", "\\\\{")
+                .replaceAll("}", "\\\\}")
+                .replaceAll("\\[", "\\\\[")
+                .replaceAll("]", "\\\\]")
+                .replaceAll("\\^", "\\\\^")
+                .replaceAll("~", "\\\\~")
+                .replaceAll("\\*", "\\\\*")
+                .replaceAll("\\?", "\\\\\\?")
+                .replaceAll("\\\\","\\\\\\\\")
+                .replaceAll(":", "\\\\\\\\:");
+    }
+
+    @Test
+    public void testEscapeMatchesReference()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(30);
+            for (int j = 0; j < length; j++) {
+                text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            assertEquals(text.toString(), referenceEscape(text.toString()), JqlBuilder.escapeText(text.toString()));
+        }
+    }
+
+    @Test
+    public void testNothingToEscape()
+    {
+        String text = "nothing to escape";
+        assertSame(text, JqlBuilder.escapeText(text));
+    }
+
+    @Test
+    public void testStringParameters()
+    {
+        String jql = new JqlBuilder().append("project = ").string("TST")
+                .append(" and creator = ").string("a\"b\\c")
+                .build();
+        assertEquals("project = \"TST\" and creator = \"a\\\"b\\\\c\"", jql);
+    }
+
+    @Test
+    public void testStringListParameter()
+    {
+        String jql = new JqlBuilder().append("key in ").strings(Arrays.asList("TST-1", "TST-2")).build();
+        assertEquals("key in (\"TST-1\", \"TST-2\")", jql);
+    }
+
+    @Test
+    public void testTextParameter()
+    {
+        String jql = new JqlBuilder().append("text ~ ").text("1+1").build();
+        assertEquals("text ~ \"1\\\\+1\"", jql);
+    }
+}
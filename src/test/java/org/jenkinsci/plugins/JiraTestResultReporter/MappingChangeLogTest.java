@@ -0,0 +1,60 @@
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+
+public class MappingChangeLogTest
+{
+
+    @Test
+    public void testChangesSinceSequence()
+    {
+        MappingChangeLog changeLog = new MappingChangeLog(10);
+        changeLog.record("test1", "TST-1");
+        changeLog.record("test2", "TST-2");
+        changeLog.record("test1", null);
+
+        List<MappingChangeLog.Change> changes = changeLog.getChangesSince(1);
+        assertEquals(2, changes.size());
+        assertEquals("test2", changes.get(0).getTestId());
+        assertEquals("TST-2", changes.get(0).getIssueKey());
+        assertTrue(changes.get(1).isRemoval());
+        assertEquals(3, changes.get(1).getSequence());
+    }
+
+    @Test
+    public void testUpToDateClientGetsNoChanges()
+    {
+        MappingChangeLog changeLog = new MappingChangeLog(10);
+        assertTrue(changeLog.getChangesSince(0).isEmpty());
+
+        changeLog.record("test1", "TST-1");
+        assertTrue(changeLog.getChangesSince(1).isEmpty());
+    }
+
+    @Test
+    public void testClientTooFarBehind()
+    {
+        MappingChangeLog changeLog = new MappingChangeLog(2);
+        changeLog.record("test1", "TST-1");
+        changeLog.record("test2", "TST-2");
+        changeLog.record("test3", "TST-3");
+
+        assertNull(changeLog.getChangesSince(0));
+        assertEquals(2, changeLog.getChangesSince(1).size());
+    }
+
+    @Test
+    public void testUnknownSequence()
+    {
+        MappingChangeLog changeLog = new MappingChangeLog(10);
+        changeLog.record("test1", "TST-1");
+
+        assertNull(changeLog.getChangesSince(5));
+        assertNull(changeLog.getChangesSince(-1));
+    }
+}
@@ -0,0 +1,152 @@
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.atlassian.jira.rest.client.api.domain.util.ErrorCollection;
+import hudson.util.StreamTaskListener;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+
+public class MappingCompactionWorkTest
+{
+    /**
+     * Fake Jira, where the search fails if any of the issues was deleted or is hidden, and fetching either of them
+     * fails with 404, like the real one
+     */
+    private static class FakeIssueLookup implements MappingCompactionWork.IssueLookup
+    {
+        private final Set<String> done;
+        private final Set<String> deleted;
+        private final Set<String> unreachable;
+        private final Set<String> hidden = new HashSet<>();
+        private final List<List<String>> searches = new ArrayList<>();
+        private final List<String> fetches = new ArrayList<>();
+
+        FakeIssueLookup(Set<String> done, Set<String> deleted, Set<String> unreachable)
+        {
+            this.done = done;
+            this.deleted = deleted;
+            this.unreachable = unreachable;
+        }
+
+        @Override
+        public Set<String> searchDone(List<String> issueKeys)
+        {
+            searches.add(new ArrayList<>(issueKeys));
+            Set<String> result = new HashSet<>();
+            for(String issueKey : issueKeys) {
+                if(deleted.contains(issueKey) || hidden.contains(issueKey)) {
+                    throw new RestClientException(Collections.<ErrorCollection>emptyList(), 400);
+                }
+                if(done.contains(issueKey)) {
+                    result.add(issueKey);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public boolean isDone(String issueKey)
+        {
+            fetches.add(issueKey);
+            if(deleted.contains(issueKey) || hidden.contains(issueKey)) {
+                throw new RestClientException(Collections.<ErrorCollection>emptyList(), 404);
+            }
+            if(unreachable.contains(issueKey)) {
+                throw new RestClientException(Collections.<ErrorCollection>emptyList(), 503);
+            }
+            return done.contains(issueKey);
+        }
+
+        @Override
+        public boolean isDeleted(String issueKey)
+        {
+            return deleted.contains(issueKey);
+        }
+    }
+
+    private static Set<String> keys(String... keys)
+    {
+        return new HashSet<>(Arrays.asList(keys));
+    }
+
+    private static Set<String> manyKeys(int count)
+    {
+        Set<String> keys = new HashSet<>();
+        for(int i = 0; i < count; i++) {
+            keys.add("TST-" + i);
+        }
+        return keys;
+    }
+
+    @Test
+    public void testDoneIssuesAreFoundBySearch()
+    {
+        FakeIssueLookup lookup = new FakeIssueLookup(keys("TST-1", "TST-3"), keys(), keys());
+        Map<String, String> closed = MappingCompactionWork.getClosedIssues(keys("TST-1", "TST-2", "TST-3"), lookup,
+                new StreamTaskListener(new ByteArrayOutputStream()));
+        assertEquals(keys("TST-1", "TST-3"), closed.keySet());
+        assertEquals("issue done", closed.get("TST-1"));
+        assertEquals(1, lookup.searches.size());
+        assertTrue(lookup.fetches.isEmpty());
+    }
+
+    @Test
+    public void testIssuesAreSearchedInBatches()
+    {
+        FakeIssueLookup lookup = new FakeIssueLookup(keys("TST-7", "TST-77"), keys(), keys());
+        Map<String, String> closed = MappingCompactionWork.getClosedIssues(
+                manyKeys(2 * MappingCompactionWork.ISSUES_PER_QUERY + 1), lookup,
+                new StreamTaskListener(new ByteArrayOutputStream()));
+        assertEquals(keys("TST-7", "TST-77"), closed.keySet());
+        assertEquals(3, lookup.searches.size());
+        for(List<String> search : lookup.searches) {
+            assertTrue(search.size() <= MappingCompactionWork.ISSUES_PER_QUERY);
+        }
+    }
+
+    @Test
+    public void testDeletedIssueDoesNotBlockItsBatch()
+    {
+        Set<String> issueKeys = manyKeys(2 * MappingCompactionWork.ISSUES_PER_QUERY);
+        FakeIssueLookup lookup = new FakeIssueLookup(keys("TST-1", "TST-90"), keys("TST-2"), keys());
+        Map<String, String> closed = MappingCompactionWork.getClosedIssues(issueKeys, lookup,
+                new StreamTaskListener(new ByteArrayOutputStream()));
+        assertEquals(keys("TST-1", "TST-2", "TST-90"), closed.keySet());
+        assertEquals("issue deleted", closed.get("TST-2"));
+        assertEquals("issue done", closed.get("TST-1"));
+        //only the batch with the deleted issue is checked one by one
+        assertEquals(MappingCompactionWork.ISSUES_PER_QUERY, lookup.fetches.size());
+        assertTrue(lookup.fetches.contains("TST-2"));
+    }
+
+    @Test
+    public void testUnreachableIssueIsKept()
+    {
+        FakeIssueLookup lookup = new FakeIssueLookup(keys(), keys("TST-1"), keys("TST-2"));
+        Map<String, String> closed = MappingCompactionWork.getClosedIssues(keys("TST-1", "TST-2", "TST-3"), lookup,
+                new StreamTaskListener(new ByteArrayOutputStream()));
+        assertEquals(keys("TST-1"), closed.keySet());
+    }
+
+    @Test
+    public void testHiddenIssueIsKept()
+    {
+        FakeIssueLookup lookup = new FakeIssueLookup(keys(), keys("TST-1"), keys());
+        lookup.hidden.add("TST-2");
+        Map<String, String> closed = MappingCompactionWork.getClosedIssues(keys("TST-1", "TST-2", "TST-3"), lookup,
+                new StreamTaskListener(new ByteArrayOutputStream()));
+        assertEquals(keys("TST-1"), closed.keySet());
+        assertEquals("issue deleted", closed.get("TST-1"));
+    }
+}
@@ -0,0 +1,119 @@
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+
+public class MappingTransferTest
+{
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        Map<String, String> exported = new HashMap<>();
+        for(int i = 0; i < 1007; i++) {
+            exported.put("FooTest.test" + i, "TST-" + i);
+        }
+        exported.put("Bar\"Test.test\\u", "TST-\u00e9");
+        StringWriter out = new StringWriter();
+        MappingTransfer.exportMap(exported, out);
+
+        Map<String, String> imported = new HashMap<>();
+        int count = MappingTransfer.importMappings(imported, new MappingChangeLog(), new StringReader(out.toString()),
+                false);
+        assertEquals(exported.size(), count);
+        assertEquals(exported, imported);
+    }
+
+    @Test
+    public void testMerge() throws IOException
+    {
+        Map<String, String> jobMap = new HashMap<>();
+        jobMap.put("test1", "TST-1");
+        jobMap.put("test2", "TST-2");
+        MappingChangeLog changeLog = new MappingChangeLog();
+
+        MappingTransfer.importMappings(jobMap, changeLog,
+                new StringReader("{\"test2\": \"TST-2\", \"test3\": \"TST-3\"}"), false);
+        assertEquals(3, jobMap.size());
+        assertEquals("TST-1", jobMap.get("test1"));
+        assertEquals("TST-3", jobMap.get("test3"));
+
+        //unchanged links are not recorded
+        List<MappingChangeLog.Change> changes = changeLog.getChangesSince(0);
+        assertEquals(1, changes.size());
+        assertEquals("test3", changes.get(0).getTestId());
+    }
+
+    @Test
+    public void testReplace() throws IOException
+    {
+        Map<String, String> jobMap = new HashMap<>();
+        jobMap.put("test1", "TST-1");
+        jobMap.put("test2", "TST-2");
+        MappingChangeLog changeLog = new MappingChangeLog();
+
+        MappingTransfer.importMappings(jobMap, changeLog, new StringReader("{\"test2\": \"TST-4\"}"), true);
+        assertEquals(1, jobMap.size());
+        assertEquals("TST-4", jobMap.get("test2"));
+        assertEquals(2, changeLog.getChangesSince(0).size());
+    }
+
+    @Test
+    public void testNothingChangesIfTheInputIsInvalid()
+    {
+        Map<String, String> jobMap = new HashMap<>();
+        jobMap.put("test1", "TST-1");
+        MappingChangeLog changeLog = new MappingChangeLog();
+
+        for(boolean replace : new boolean[] {false, true}) {
+            try {
+                MappingTransfer.importMappings(jobMap, changeLog,
+                        new StringReader("{\"test2\": \"TST-2\", \"test3\": null}"), replace);
+                fail("The import should have failed");
+            } catch (IOException e) {
+                //expected
+            }
+            assertEquals(Collections.singletonMap("test1", "TST-1"), jobMap);
+            assertTrue(changeLog.getChangesSince(0).isEmpty());
+        }
+    }
+
+    @Test
+    public void testNothingChangesIfTheInputIsTruncated()
+    {
+        Map<String, String> jobMap = new HashMap<>();
+        jobMap.put("test1", "TST-1");
+
+        try {
+            MappingTransfer.importMappings(jobMap, new MappingChangeLog(),
+                    new StringReader("{\"test1\": \"TST-9\", \"test2\": \"TST-2\", "), true);
+            fail("The import should have failed");
+        } catch (IOException e) {
+            //expected
+        }
+        assertEquals(Collections.singletonMap("test1", "TST-1"), jobMap);
+    }
+
+    @Test(expected = IOException.class)
+    public void testImportNotAnObject() throws IOException
+    {
+        MappingTransfer.importMappings(new HashMap<String, String>(), new MappingChangeLog(),
+                new StringReader("[\"test1\"]"), false);
+    }
+
+    @Test(expected = IOException.class)
+    public void testImportTruncated() throws IOException
+    {
+        MappingTransfer.importMappings(new HashMap<String, String>(), new MappingChangeLog(),
+                new StringReader("{\"test1\": \"TST-1\", "), false);
+    }
+}
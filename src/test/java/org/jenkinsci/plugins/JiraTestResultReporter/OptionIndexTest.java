@@ -0,0 +1,54 @@
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import hudson.util.ListBoxModel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class OptionIndexTest
+{
+    private static ListBoxModel versions()
+    {
+        ListBoxModel options = new ListBoxModel();
+        options.add("2.0", "4");
+        options.add("1.10", "3");
+        options.add("Beta", "5");
+        options.add("1.1", "1");
+        options.add("1.2", "2");
+        return options;
+    }
+
+    @Test
+    public void testPrefixKeepsTheOriginalOrder()
+    {
+        ListBoxModel matches = new OptionIndex(versions()).startingWith("1.1");
+        assertEquals(2, matches.size());
+        assertEquals("1.10", matches.get(0).name);
+        assertEquals("1.1", matches.get(1).name);
+    }
+
+    @Test
+    public void testPrefixIgnoresCase()
+    {
+        ListBoxModel matches = new OptionIndex(versions()).startingWith("be");
+        assertEquals(1, matches.size());
+        assertEquals("5", matches.get(0).value);
+    }
+
+    @Test
+    public void testNoPrefix()
+    {
+        ListBoxModel options = versions();
+        assertSame(options, new OptionIndex(options).startingWith(null));
+        assertEquals(5, new OptionIndex(options).startingWith("").size());
+    }
+
+    @Test
+    public void testNoMatches()
+    {
+        assertTrue(new OptionIndex(versions()).startingWith("3").isEmpty());
+        assertTrue(new OptionIndex(versions()).startingWith("zzz").isEmpty());
+        assertTrue(new OptionIndex(new ListBoxModel()).startingWith("1").isEmpty());
+    }
+}
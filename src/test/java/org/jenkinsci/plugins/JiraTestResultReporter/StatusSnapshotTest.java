@@ -0,0 +1,41 @@
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import com.atlassian.jira.rest.client.api.domain.Status;
+import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.FullStatus;
+import org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions.StatusCategory;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+
+public class StatusSnapshotTest
+{
+    private static FullStatus status(long id, String name, String colorName)
+    {
+        return new FullStatus(new Status(URI.create("http://jira/status/" + id), id, name, null, null),
+                new StatusCategory(null, 1L, "key", colorName));
+    }
+
+    @Test
+    public void testLookups()
+    {
+        StatusSnapshot snapshot = new StatusSnapshot(Arrays.asList(
+                status(1, "Open", "blue-gray"), status(6, "Closed", "green")), 42L);
+
+        assertEquals("green", snapshot.getColorName("Closed"));
+        assertEquals("Open", snapshot.getById().get(1L).getName());
+        assertNull(snapshot.getColorName("Unknown"));
+        assertNull(snapshot.getColorName(null));
+        assertEquals(42L, snapshot.getTimestamp());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsImmutable()
+    {
+        StatusSnapshot snapshot = new StatusSnapshot(Arrays.asList(status(1, "Open", "blue-gray")), 0L);
+        snapshot.getByName().clear();
+    }
+}
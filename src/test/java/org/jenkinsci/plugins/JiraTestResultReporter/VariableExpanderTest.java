@@ -0,0 +1,136 @@
+package org.jenkinsci.plugins.JiraTestResultReporter;
+
+import hudson.EnvVars;
+import hudson.tasks.test.TestResult;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+
+public class VariableExpanderTest
+{
+    private final TestResult test = mock(TestResult.class);
+
+    @Test
+    public void testExpandEnvironmentVariables()
+    {
+        EnvVars envVars = new EnvVars("JOB_NAME", "job", "BUILD_NUMBER", "42");
+        String expanded = VariableExpander.expandVariables(test, envVars, "${JOB_NAME} #${BUILD_NUMBER} (${JOB_NAME})");
+        assertEquals("job #42 (job)", expanded);
+    }
+
+    @Test
+    public void testExpandPluginVariables()
+    {
+        String expanded = VariableExpander.expandVariables(test, new EnvVars(), "line1${CRLF}line2");
+        assertEquals("line1\nline2", expanded);
+    }
+
+    @Test
+    public void testEnvironmentVariablesTakePrecedence()
+    {
+        EnvVars envVars = new EnvVars("CRLF", "<br/>");
+        String expanded = VariableExpander.expandVariables(test, envVars, "line1${CRLF}line2");
+        assertEquals("line1<br/>line2", expanded);
+    }
+
+    @Test
+    public void testUnknownVariablesAreKept()
+    {
+        String expanded = VariableExpander.expandVariables(test, new EnvVars(), "${UNKNOWN} and ${CRLF}");
+        assertEquals("${UNKNOWN} and \n", expanded);
+    }
+
+    @Test
+    public void testMalformedVariables()
+    {
+        EnvVars envVars = new EnvVars("A", "a");
+        assertEquals("$ ${ ${} ${A", VariableExpander.expandVariables(test, envVars, "$ ${ ${} ${A"));
+        assertEquals("${a}", VariableExpander.expandVariables(test, envVars, "${${A}}"));
+    }
+
+    @Test
+    public void testNoTest()
+    {
+        assertEquals("${CRLF}", VariableExpander.expandVariables(null, new EnvVars(), "${CRLF}"));
+    }
+
+    @Test
+    public void testCollectVariables()
+    {
+        Set<String> variables = new HashSet<>();
+        VariableExpander.collectVariables("${JOB_NAME}: ${TEST_NAME} ${JOB_NAME}", variables);
+        VariableExpander.collectVariables(null, variables);
+        assertEquals(new HashSet<>(Arrays.asList("JOB_NAME", "TEST_NAME")), variables);
+    }
+
+    @Test
+    public void testTemplateVariables()
+    {
+        VariableExpander.Template template = VariableExpander.Template.parse("${A}-${B}-${A}");
+        assertEquals(Arrays.asList("A", "B", "A"), template.getVariables());
+    }
+
+    @Test
+    public void testContextReusesExpandedVariables()
+    {
+        ExpansionContext context = new ExpansionContext(test, new EnvVars("A", "a"));
+        assertEquals("a\n", VariableExpander.expandVariables(context, "${A}${CRLF}"));
+        assertEquals("\n", context.getVariable("CRLF"));
+
+        context.putVariable("CRLF", "<br/>");
+        assertEquals("x<br/>", VariableExpander.expandVariables(context, "x${CRLF}"));
+    }
+
+    @Test
+    public void testExcerptOfShortText()
+    {
+        assertEquals("short output", VariableExpander.excerpt("short output", 100));
+        assertNull(VariableExpander.excerpt(null, 100));
+    }
+
+    @Test
+    public void testExcerptOfLongText()
+    {
+        StringBuilder output = new StringBuilder("BEGIN");
+        for (int i = 0; i < 10000; i++) {
+            output.append('x');
+        }
+        output.append("END");
+
+        String excerpt = VariableExpander.excerpt(output.toString(), 100);
+        assertTrue(excerpt.length() <= 100);
+        assertTrue(excerpt.startsWith("BEGIN"));
+        assertTrue(excerpt.endsWith("END"));
+        assertTrue(excerpt.contains("characters omitted"));
+    }
+
+    @Test
+    public void testExcerptShorterThanTheMarker()
+    {
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            output.append('x');
+        }
+
+        for (int maxLength = 0; maxLength <= 50; maxLength++) {
+            assertTrue(VariableExpander.excerpt(output.toString(), maxLength).length() <= maxLength);
+        }
+    }
+
+    @Test
+    public void testUnresolvedVariables()
+    {
+        Set<String> variables = new HashSet<>(Arrays.asList("JOB_NAME", "CRLF", "NEW_VAR", "OTHER_VAR"));
+        EnvVars envVars = new EnvVars("JOB_NAME", "job");
+        assertEquals(new HashSet<>(Arrays.asList("NEW_VAR", "OTHER_VAR")),
+                VariableExpander.getUnresolvedVariables(variables, envVars));
+        assertEquals(new HashSet<>(Arrays.asList("JOB_NAME", "NEW_VAR", "OTHER_VAR")),
+                VariableExpander.getUnresolvedVariables(variables, null));
+    }
+}
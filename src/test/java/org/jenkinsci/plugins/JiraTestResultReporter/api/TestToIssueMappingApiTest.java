@@ -0,0 +1,96 @@
+package org.jenkinsci.plugins.JiraTestResultReporter.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+
+public class TestToIssueMappingApiTest
+{
+    @Test
+    public void testParseLookup()
+    {
+        List<String[]> tests = TestToIssueMappingApi.parseLookup(new StringReader(
+                "[{\"job\": \"folder/job\", \"testId\": \"FooTest.testBar\"}, {\"job\": \"other\", \"testId\": \"BazTest.testQux\"}]"));
+        assertEquals(2, tests.size());
+        assertArrayEquals(new String[] {"folder/job", "FooTest.testBar"}, tests.get(0));
+        assertArrayEquals(new String[] {"other", "BazTest.testQux"}, tests.get(1));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testParseLookupNotAnArray()
+    {
+        TestToIssueMappingApi.parseLookup(new StringReader("{\"job\": \"job\", \"testId\": \"FooTest.testBar\"}"));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testParseLookupEmptyBody()
+    {
+        TestToIssueMappingApi.parseLookup(new StringReader(""));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testParseLookupMalformed()
+    {
+        TestToIssueMappingApi.parseLookup(new StringReader("[{\"job\": "));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testParseLookupMissingTestId()
+    {
+        TestToIssueMappingApi.parseLookup(new StringReader("[{\"job\": \"job\"}]"));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testParseLookupNullJob()
+    {
+        TestToIssueMappingApi.parseLookup(new StringReader("[{\"job\": null, \"testId\": \"FooTest.testBar\"}]"));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testParseLookupObjectJob()
+    {
+        TestToIssueMappingApi.parseLookup(new StringReader("[{\"job\": {}, \"testId\": \"FooTest.testBar\"}]"));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testParseLookupArrayTestId()
+    {
+        TestToIssueMappingApi.parseLookup(new StringReader("[{\"job\": \"job\", \"testId\": [\"FooTest.testBar\"]}]"));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testParseLookupNotAnObject()
+    {
+        TestToIssueMappingApi.parseLookup(new StringReader("[\"job\"]"));
+    }
+
+    @Test
+    public void testLookupResult()
+    {
+        List<String[]> tests = TestToIssueMappingApi.parseLookup(new StringReader(
+                "[{\"job\": \"job\", \"testId\": \"FooTest.testBar\"}, {\"job\": \"job\", \"testId\": \"FooTest.testBaz\"},"
+                + " {\"job\": \"missing\", \"testId\": \"FooTest.testBar\"}]"));
+        Map<String, Map<String, String>> issueKeysByJob = new HashMap<>();
+        issueKeysByJob.put("job", Collections.singletonMap("FooTest.testBar", "TST-1"));
+
+        JsonArray result = TestToIssueMappingApi.toLookupResult(tests, issueKeysByJob);
+        assertEquals(3, result.size());
+        JsonObject linked = result.get(0).getAsJsonObject();
+        assertEquals("job", linked.get("job").getAsString());
+        assertEquals("FooTest.testBar", linked.get("testId").getAsString());
+        assertEquals("TST-1", linked.get("issueKey").getAsString());
+        assertFalse(result.get(1).getAsJsonObject().has("issueKey"));
+        assertEquals("missing", result.get(2).getAsJsonObject().get("job").getAsString());
+        assertFalse(result.get(2).getAsJsonObject().has("issueKey"));
+    }
+}
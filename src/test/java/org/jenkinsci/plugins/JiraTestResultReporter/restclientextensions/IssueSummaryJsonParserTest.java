@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.JiraTestResultReporter.restclientextensions;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+
+public class IssueSummaryJsonParserTest
+{
+    private static final String ISSUE = "{"
+            + "\"expand\": \"renderedFields,names,schema,transitions\","
+            + "\"id\": \"10002\","
+            + "\"self\": \"http://jira.example.com/rest/api/latest/issue/10002\","
+            + "\"key\": \"TST-256\","
+            + "\"fields\": {"
+            + "  \"summary\": \"FooTest.testBar : expected:<1> but was:<2>\","
+            + "  \"status\": {"
+            + "    \"self\": \"http://jira.example.com/rest/api/2/status/1\","
+            + "    \"description\": \"\","
+            + "    \"name\": \"Open\","
+            + "    \"id\": \"1\","
+            + "    \"statusCategory\": {\"id\": 2, \"key\": \"new\", \"colorName\": \"blue-gray\", \"name\": \"To Do\"}"
+            + "  },"
+            + "  \"customfield_10000\": [{\"value\": \"skipped\"}, null]"
+            + "},"
+            + "\"transitions\": ["
+            + "  {\"id\": \"5\", \"name\": \"Resolve Issue\", \"to\": {\"name\": \"Resolved\", \"id\": \"5\"}, \"hasScreen\": true},"
+            + "  {\"id\": 2, \"name\": \"Close Issue\", \"fields\": {}}"
+            + "]"
+            + "}";
+
+    @Test
+    public void testParse() throws IOException
+    {
+        IssueSummary issue = new IssueSummaryJsonParser().parse(new StringReader(ISSUE));
+        assertEquals("TST-256", issue.getKey());
+        assertEquals("FooTest.testBar : expected:<1> but was:<2>", issue.getSummary());
+        assertEquals("Open", issue.getStatus());
+        assertEquals("blue-gray", issue.getStatusColor());
+        assertEquals("new", issue.getStatusCategory());
+        assertEquals(2, issue.getTransitions().size());
+        assertEquals("5", issue.getTransitions().get(0).getId());
+        assertEquals("Resolve Issue", issue.getTransitions().get(0).getName());
+        assertEquals("2", issue.getTransitions().get(1).getId());
+    }
+
+    @Test
+    public void testParseWithoutTransitionsAndCategory() throws IOException
+    {
+        IssueSummary issue = new IssueSummaryJsonParser().parse(new StringReader(
+                "{\"key\": \"TST-1\", \"fields\": {\"status\": {\"name\": \"Closed\"}, \"summary\": null}}"));
+        assertEquals("TST-1", issue.getKey());
+        assertEquals("Closed", issue.getStatus());
+        assertNull(issue.getSummary());
+        assertNull(issue.getStatusColor());
+        assertNull(issue.getStatusCategory());
+        assertTrue(issue.getTransitions().isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testParseInvalid() throws IOException
+    {
+        new IssueSummaryJsonParser().parse(new StringReader("{\"key\": "));
+    }
+}